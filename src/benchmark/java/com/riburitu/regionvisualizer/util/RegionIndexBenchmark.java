@@ -0,0 +1,150 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compara las implementaciones de {@link RegionIndex} sobre un mismo conjunto de regiones:
+ * tiempo de construcción, búsquedas puntuales, búsquedas con caja segura y consultas por caja.
+ * Los puntos de prueba se generan con semilla fija para que dos ejecuciones sean comparables.
+ *
+ * Es solo para desarrollo y no va en el jar del mod: {@code ./gradlew runIndexBenchmark
+ * -Pregions=1000,100000} mide conjuntos sintéticos de esos tamaños, y una ruta en lugar de
+ * un número mide las regiones de ese archivo JSON.
+ */
+public class RegionIndexBenchmark {
+    private static final int POINT_QUERIES = 200_000;
+    private static final int BOX_QUERIES = 20_000;
+    private static final int BOX_SIZE = 64;
+    private static final long SEED = 0x5EEDL;
+    private static final String[] DEFAULT_SIZES = {"100", "1000", "10000", "100000"};
+
+    public static void main(String[] args) throws IOException {
+        ResourceKey<Level> dimension = ResourceKey.create(Registries.DIMENSION, new ResourceLocation("overworld"));
+        for (String arg : args.length > 0 ? args : DEFAULT_SIZES) {
+            List<Region> regions = new ArrayList<>();
+            if (arg.chars().allMatch(Character::isDigit)) {
+                regions = syntheticRegions(dimension, Integer.parseInt(arg));
+            } else {
+                try (Reader reader = Files.newBufferedReader(Path.of(arg), StandardCharsets.UTF_8)) {
+                    RegionManager.readLegacyJson(reader, regions::add);
+                }
+            }
+            for (String line : run(regions)) {
+                System.out.println(line);
+            }
+        }
+    }
+
+    /**
+     * Conjunto sintético parecido a un mapa grande: muchas habitaciones pequeñas agrupadas
+     * en "ciudades" y unas pocas regiones enormes que las cubren (biomas, reinos).
+     */
+    public static List<Region> syntheticRegions(ResourceKey<Level> dimension, int count) {
+        Random random = new Random(SEED);
+        List<Region> regions = new ArrayList<>(count);
+        int huge = Math.max(1, count / 500);
+        for (int i = 0; i < huge; i++) {
+            int x = random.nextInt(20_000) - 10_000;
+            int z = random.nextInt(20_000) - 10_000;
+            int size = 1_000 + random.nextInt(3_000);
+            regions.add(new Region("bench_huge_" + i, dimension,
+                new BlockPos(x, -64, z), new BlockPos(x + size, 319, z + size), "", false, false));
+        }
+        int cities = Math.max(1, count / 200);
+        int[][] centers = new int[cities][2];
+        for (int i = 0; i < cities; i++) {
+            centers[i][0] = random.nextInt(20_000) - 10_000;
+            centers[i][1] = random.nextInt(20_000) - 10_000;
+        }
+        for (int i = huge; i < count; i++) {
+            int[] center = centers[random.nextInt(cities)];
+            int x = center[0] + random.nextInt(512) - 256;
+            int y = random.nextInt(120);
+            int z = center[1] + random.nextInt(512) - 256;
+            regions.add(new Region("bench_room_" + i, dimension,
+                new BlockPos(x, y, z),
+                new BlockPos(x + 3 + random.nextInt(12), y + 3 + random.nextInt(6), z + 3 + random.nextInt(12)),
+                "", false, false));
+        }
+        return regions;
+    }
+
+    public static List<String> run(List<Region> regions) {
+        List<String> report = new ArrayList<>();
+        if (regions.isEmpty()) {
+            report.add("Sin regiones que medir");
+            return report;
+        }
+
+        // Puntos de prueba: la mitad dentro de alguna región, la otra mitad cerca de ellas.
+        Random random = new Random(SEED);
+        int[] points = new int[POINT_QUERIES * 3];
+        for (int i = 0; i < POINT_QUERIES; i++) {
+            Region region = regions.get(random.nextInt(regions.size()));
+            int spread = i % 2 == 0 ? 0 : 32;
+            points[i * 3] = randomBetween(random, region.getMinX() - spread, region.getMaxX() + spread);
+            points[i * 3 + 1] = randomBetween(random, region.getMinY() - spread, region.getMaxY() + spread);
+            points[i * 3 + 2] = randomBetween(random, region.getMinZ() - spread, region.getMaxZ() + spread);
+        }
+        BoundingBox[] boxes = new BoundingBox[BOX_QUERIES];
+        for (int i = 0; i < BOX_QUERIES; i++) {
+            int p = random.nextInt(POINT_QUERIES) * 3;
+            boxes[i] = new BoundingBox(points[p], points[p + 1], points[p + 2],
+                points[p] + BOX_SIZE, points[p + 1] + BOX_SIZE, points[p + 2] + BOX_SIZE);
+        }
+
+        report.add(regions.size() + " regiones, " + POINT_QUERIES + " puntos, " + BOX_QUERIES + " cajas de " + BOX_SIZE);
+        for (RegionIndexType type : RegionIndexType.values()) {
+            long start = System.nanoTime();
+            RegionIndex index = type.build(regions);
+            long buildNanos = System.nanoTime() - start;
+
+            int hits = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < POINT_QUERIES; i++) {
+                if (index.find(new BlockPos(points[i * 3], points[i * 3 + 1], points[i * 3 + 2])).isPresent()) hits++;
+            }
+            long findNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < POINT_QUERIES; i++) {
+                index.lookup(new BlockPos(points[i * 3], points[i * 3 + 1], points[i * 3 + 2]));
+            }
+            long lookupNanos = System.nanoTime() - start;
+
+            long found = 0;
+            start = System.nanoTime();
+            for (BoundingBox box : boxes) {
+                found += index.query(box).size();
+            }
+            long queryNanos = System.nanoTime() - start;
+
+            report.add(String.format("%s: construir %.1f ms, punto %d ns, caja segura %d ns, caja %d ns (%d aciertos, %d resultados) [%s]",
+                type.getConfigName(),
+                buildNanos / 1_000_000.0,
+                findNanos / POINT_QUERIES,
+                lookupNanos / POINT_QUERIES,
+                queryNanos / BOX_QUERIES,
+                hits, found, index.describe()));
+        }
+        return report;
+    }
+
+    private static int randomBetween(Random random, int min, int max) {
+        return min + random.nextInt(max - min + 1);
+    }
+}
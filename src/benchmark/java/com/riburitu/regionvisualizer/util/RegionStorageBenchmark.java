@@ -0,0 +1,106 @@
+package com.riburitu.regionvisualizer.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.Level;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compara el formato JSON con el de {@link RegionBinaryFormat}: tamaño en disco y tiempo de escritura y
+ * de lectura, todo en memoria para no medir el disco.
+ *
+ * Es solo para desarrollo y no va en el jar del mod: {@code ./gradlew runStorageBenchmark
+ * -Pregions=1000,100000} mide conjuntos sintéticos de esos tamaños, y una ruta en lugar de
+ * un número mide las regiones de ese archivo JSON.
+ */
+public class RegionStorageBenchmark {
+    private static final String[] MUSIC = {"tavern.ogg", "cave_ambient.ogg", "castle_theme.ogg", "forest_night.ogg"};
+    private static final String[] DEFAULT_SIZES = {"1000", "10000", "100000"};
+
+    public static void main(String[] args) throws IOException {
+        ResourceKey<Level> dimension = ResourceKey.create(Registries.DIMENSION, new ResourceLocation("overworld"));
+        for (String arg : args.length > 0 ? args : DEFAULT_SIZES) {
+            List<Region> regions = new ArrayList<>();
+            if (arg.chars().allMatch(Character::isDigit)) {
+                regions = RegionIndexBenchmark.syntheticRegions(dimension, Integer.parseInt(arg));
+            } else {
+                try (Reader reader = Files.newBufferedReader(Path.of(arg), StandardCharsets.UTF_8)) {
+                    RegionManager.readLegacyJson(reader, regions::add);
+                }
+            }
+            for (String line : run(regions)) {
+                System.out.println(line);
+            }
+        }
+    }
+
+    public static List<String> run(List<Region> source) throws IOException {
+        List<String> report = new ArrayList<>();
+        if (source.isEmpty()) {
+            report.add("Sin regiones que medir");
+            return report;
+        }
+
+        // Las regiones sintéticas no tienen música; se les asigna una de unas pocas, como en un mapa real.
+        List<Region> regions = new ArrayList<>(source.size());
+        for (int i = 0; i < source.size(); i++) {
+            Region region = source.get(i);
+            regions.add(region.getMusicFile() == null || region.getMusicFile().isEmpty()
+                ? region.withMusicFile(MUSIC[i % MUSIC.length]) : region);
+        }
+
+        long start = System.nanoTime();
+        JsonArray array = new JsonArray();
+        for (Region region : regions) {
+            array.add(region.toJson());
+        }
+        ByteArrayOutputStream jsonBytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(jsonBytes, StandardCharsets.UTF_8)) {
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            gson.toJson(array, writer);
+        }
+        long jsonWriteNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int[] jsonCount = new int[1];
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(jsonBytes.toByteArray()), StandardCharsets.UTF_8)) {
+            RegionManager.readLegacyJson(reader, region -> jsonCount[0]++);
+        }
+        long jsonReadNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ByteArrayOutputStream binaryBytes = new ByteArrayOutputStream();
+        RegionBinaryFormat.write(binaryBytes, regions);
+        long binaryWriteNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int[] binaryCount = new int[1];
+        RegionBinaryFormat.read(binaryBytes.toByteArray(), region -> binaryCount[0]++);
+        long binaryReadNanos = System.nanoTime() - start;
+
+        report.add(regions.size() + " regiones");
+        report.add(String.format("json: %d KiB, escribir %.1f ms, leer %.1f ms (%d leídas)",
+            jsonBytes.size() / 1024, jsonWriteNanos / 1_000_000.0, jsonReadNanos / 1_000_000.0, jsonCount[0]));
+        report.add(String.format("binario: %d KiB, escribir %.1f ms, leer %.1f ms (%d leídas)",
+            binaryBytes.size() / 1024, binaryWriteNanos / 1_000_000.0, binaryReadNanos / 1_000_000.0, binaryCount[0]));
+        report.add(String.format("binario/json: %.1f%% del tamaño, lectura %.1fx más rápida",
+            100.0 * binaryBytes.size() / jsonBytes.size(), (double) jsonReadNanos / Math.max(1, binaryReadNanos)));
+        return report;
+    }
+}
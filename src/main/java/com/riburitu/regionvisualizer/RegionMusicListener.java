@@ -0,0 +1,98 @@
+package com.riburitu.regionvisualizer;
+
+import com.riburitu.regionvisualizer.event.RegionEnterEvent;
+import com.riburitu.regionvisualizer.event.RegionExitEvent;
+import com.riburitu.regionvisualizer.network.NetworkHandler;
+import com.riburitu.regionvisualizer.network.PlayMusicPacket;
+import com.riburitu.regionvisualizer.util.Region;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+
+/**
+ * Música de las regiones: reproduce la pista al entrar y la detiene al quedar fuera de toda
+ * región. Escucha con prioridad mínima para respetar las cancelaciones de otros oyentes.
+ */
+public class RegionMusicListener {
+
+    @SubscribeEvent(priority = EventPriority.LOWEST, receiveCanceled = true)
+    public void onRegionEnter(RegionEnterEvent event) {
+        ServerPlayer player = event.getServerPlayer();
+        if (event.isCanceled()) {
+            // Salió de la región anterior pero no entró en la nueva: queda fuera de toda región.
+            if (event.getOldRegion() != null) {
+                // El cliente pudo haber arrancado la región nueva por su cuenta: se detiene lo que suene.
+                stopMusic(player, event.getOldRegion(), false);
+            }
+            return;
+        }
+
+        Region region = event.getNewRegion();
+        String musicFile = region.getMusicFile();
+        if (isValidAudioFile(musicFile)) {
+            int trackId = RegionVisualizer.INSTANCE.getMusicTracks().idOf(musicFile);
+            NetworkHandler.sendMusic(player, PlayMusicPacket.play(trackId, region.isLoopEnabled(), region.isFadeEnabled()));
+
+            // Remover la extensión del nombre para mostrar
+            String displayName = removeFileExtension(musicFile);
+
+            // Mensaje al jugador en la HUD superpuesta.
+            NetworkHandler.sendOverlayMessage(player,
+                    Component.literal("Ahora sonando → ")
+                        .withStyle(ChatFormatting.GOLD)
+                        .append(Component.literal("♫ ")
+                                .withStyle(ChatFormatting.AQUA))
+                        .append(Component.literal(displayName)
+                            .withStyle(ChatFormatting.AQUA, ChatFormatting.BOLD))
+                        .append(Component.literal(" ♫")
+                            .withStyle(ChatFormatting.AQUA))
+                );
+            System.out.println("[RegionVisualizer] " + player.getName().getString() + " ha entrado en " + region.getName());
+        } else {
+            NetworkHandler.sendOverlayMessage(player, Component.literal("Formato de audio no soportado: " + musicFile).withStyle(ChatFormatting.RED));
+            System.out.println("[RegionVisualizer] Formato no válido: " + musicFile);
+        }
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onRegionExit(RegionExitEvent event) {
+        // Si pasa directamente a otra región, la música la cambia el evento de entrada.
+        if (event.getNewRegion() == null) {
+            stopMusic(event.getServerPlayer(), event.getOldRegion(), true);
+        }
+    }
+
+    private void stopMusic(ServerPlayer player, Region last, boolean onlyItsTrack) {
+        int trackId = onlyItsTrack ? RegionVisualizer.INSTANCE.getMusicTracks().idOf(last.getMusicFile()) : PlayMusicPacket.NO_TRACK_ID;
+        NetworkHandler.sendMusic(player, PlayMusicPacket.stop(trackId, last.isFadeEnabled()));
+
+        // Mensaje al jugador en la HUD superpuesta.
+        NetworkHandler.sendOverlayMessage(player,
+                Component.literal("⏹ Música detenida")
+                    .withStyle(ChatFormatting.RED, ChatFormatting.BOLD)
+            );
+
+        System.out.println("[RegionVisualizer] " + player.getName().getString() + " salió de la región.");
+    }
+
+    // Método para validar extensiones de audio
+    private boolean isValidAudioFile(String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            return false;
+        }
+        String lowerName = fileName.toLowerCase();
+        return lowerName.endsWith(".ogg") || lowerName.endsWith(".wav");
+    }
+
+    // Método para remover la extensión
+    private String removeFileExtension(String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            return fileName;
+        }
+        int lastDot = fileName.lastIndexOf('.');
+        return lastDot > 0 ? fileName.substring(0, lastDot) : fileName;
+    }
+}
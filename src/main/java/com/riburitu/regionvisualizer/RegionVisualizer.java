@@ -4,10 +4,18 @@ import com.riburitu.regionvisualizer.registry.ModItems;
 import com.riburitu.regionvisualizer.commands.RegionCommands;
 import com.riburitu.regionvisualizer.client.ClientEventHandler;
 import com.riburitu.regionvisualizer.commands.PlayMusicCommand;
+import com.riburitu.regionvisualizer.config.ServerConfig;
 import com.riburitu.regionvisualizer.item.RegionSelectorItem;
+import com.riburitu.regionvisualizer.network.MusicTransferService;
 import com.riburitu.regionvisualizer.network.NetworkHandler;
+import com.riburitu.regionvisualizer.network.PlayMusicPacket;
+import com.riburitu.regionvisualizer.network.RegionMirrorSync;
+import com.riburitu.regionvisualizer.util.MusicTrackRegistry;
 import com.riburitu.regionvisualizer.util.Region;
+import com.riburitu.regionvisualizer.util.RegionCheckScheduler;
+import com.riburitu.regionvisualizer.util.RegionHysteresis;
 import com.riburitu.regionvisualizer.util.RegionManager;
+import com.riburitu.regionvisualizer.util.RegionTracker;
 
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.eventbus.api.IEventBus;
@@ -18,31 +26,32 @@ import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import net.minecraftforge.fml.loading.FMLEnvironment;
 import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
+import net.minecraftforge.event.level.LevelEvent;
 import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.api.distmarker.Dist;
 
-import net.minecraft.ChatFormatting;
 import net.minecraft.core.BlockPos;
-import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.Level;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
-import java.util.Objects;
 
 @Mod(RegionVisualizer.MODID)
 public class RegionVisualizer {
 	public static final String MODID = "regionvisualizer";
 	public static RegionVisualizer INSTANCE;
-    private final Map<ServerPlayer, String> lastRegion = new HashMap<>();
-    private final Map<ServerPlayer, Long> lastRegionMessageTime = new HashMap<>();
-    private static final long MESSAGE_COOLDOWN = 1000; // 1 segundo de cooldown
     private final static RegionManager regionManager = new RegionManager(); // Primero
+    private final static MusicTrackRegistry musicTracks = new MusicTrackRegistry();
     private final RegionCommands regionCommands = new RegionCommands(RegionVisualizer.regionManager);
+    private final RegionTracker regionTracker = new RegionTracker(RegionVisualizer.regionManager);
+    private final RegionMirrorSync regionMirrorSync = new RegionMirrorSync(RegionVisualizer.regionManager, RegionVisualizer.musicTracks);
+    private final MusicTransferService musicTransfers = new MusicTransferService(RegionVisualizer.musicTracks);
+    private final RegionCheckScheduler regionCheckScheduler = new RegionCheckScheduler(regionTracker::update,
+        ServerConfig.getRegionCheckWindowTicks(), ServerConfig.getRegionCheckBudgetMicros());
     public RegionVisualizer(FMLJavaModLoadingContext context) {
         
     	INSTANCE = this;
@@ -51,6 +60,7 @@ public class RegionVisualizer {
         // Registro común (server + client)
         ModItems.ITEMS.register(modEventBus);
         NetworkHandler.register();
+        musicTracks.setListener(NetworkHandler::sendTrackAdded);
         modEventBus.addListener(ModItems::registerCreativeTab);
 
         // Solo registrar eventos del cliente si estamos en el cliente
@@ -61,12 +71,25 @@ public class RegionVisualizer {
         // Eventos generales
         MinecraftForge.EVENT_BUS.register(this);
         MinecraftForge.EVENT_BUS.register(RegionSelectorItem.class);
+        MinecraftForge.EVENT_BUS.register(new RegionMusicListener());
     }
 
     public RegionManager getRegionManager() {
         return regionManager;
     }
 
+    public MusicTrackRegistry getMusicTracks() {
+        return musicTracks;
+    }
+
+    public RegionMirrorSync getRegionMirrorSync() {
+        return regionMirrorSync;
+    }
+
+    public MusicTransferService getMusicTransfers() {
+        return musicTransfers;
+    }
+
     @SubscribeEvent
     public void onRegisterCommands(RegisterCommandsEvent event) {
         regionCommands.region(event.getDispatcher());
@@ -76,103 +99,75 @@ public class RegionVisualizer {
 
     @SubscribeEvent
     public void onServerStarting(ServerStartingEvent event) {
-    	regionManager.loadRegions(event.getServer().overworld());
-        System.out.println("[RegionVisualizer] 📂 Regiones cargadas al iniciar el servidor: " + regionManager.getRegions().size());
+    	ServerConfig.load();
+    	regionManager.setIndexType(ServerConfig.getRegionIndex());
+    	regionManager.configureSaves(ServerConfig.getSaveQuietMillis(), ServerConfig.getSaveMaxDelayMillis());
+    	regionCheckScheduler.configure(ServerConfig.getRegionCheckWindowTicks(), ServerConfig.getRegionCheckBudgetMicros());
+    	regionCheckScheduler.clear();
+    	regionTracker.clear();
+    	RegionHysteresis hysteresis = new RegionHysteresis(ServerConfig.getRegionEntryMargin(),
+    	    ServerConfig.getRegionExitMargin(), ServerConfig.getRegionMinDwellMillis());
+    	regionTracker.configure(hysteresis);
+    	regionMirrorSync.configure(hysteresis);
+    	regionMirrorSync.clear();
+    	NetworkHandler.clearOutbound();
+    	musicTransfers.configure(ServerConfig.getMusicDownloadBytesPerSecond(), ServerConfig.getMusicMaxConcurrentTransfers());
+    	musicTransfers.clear();
+    	// Cada dimensión guarda sus regiones con el mundo; el diario vive en la raíz del mundo.
+    	regionManager.loadRegions(event.getServer());
+    	musicTracks.load(event.getServer().getServerDirectory().toPath().resolve("music"));
+        System.out.println("[RegionVisualizer] 📂 Regiones cargadas al iniciar el servidor: " + regionManager.getRegionCount());
         for (Region region : regionManager.getRegions()) {
             System.out.println("[RegionVisualizer] 🔍 Región cargada: " + region.getName() + ", música: " + region.getMusicFile() + ", loopEnabled: " + region.isLoopEnabled() + ", fadeEnabled: " + region.isFadeEnabled());
         }
     }
 
     @SubscribeEvent
-    public void onPlayerTick(TickEvent.PlayerTickEvent event) {
-        if (event.phase != TickEvent.Phase.END || !(event.player instanceof ServerPlayer player)) return;
-        if (player.level().isClientSide()) return;
-        if (player.tickCount % 5 != 0) return;
-        
-        ServerLevel level = player.serverLevel();
-        String currentRegion = getCurrentRegion(level, player.blockPosition());
-        String last = lastRegion.getOrDefault(player, null);
-
-        if (!Objects.equals(currentRegion, last)) {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - lastRegionMessageTime.getOrDefault(player, 0L) < MESSAGE_COOLDOWN) return;
-            lastRegionMessageTime.put(player, currentTime);
-
-            if (currentRegion != null) {
-                Optional<Region> regionOpt = regionManager.getRegionByName(currentRegion);
-                regionOpt.ifPresent(region -> {
-                    String musicFile = region.getMusicFile();
-                    
-                    if (isValidAudioFile(musicFile)) {
-                        String musicCommand = "MUSIC:" + musicFile + ":" + region.isLoopEnabled() + ":" + region.isFadeEnabled();
-                        NetworkHandler.sendPlayMusic(player, musicCommand);
-                        
-                        // Remover la extensión del nombre para mostrar
-                        String displayName = removeFileExtension(musicFile);
-                        
-                        // Mensaje al jugador en la HUD superpuesta.
-                        NetworkHandler.sendOverlayMessage(player, 
-                        		Component.literal("Ahora sonando → ")
-                        	        .withStyle(ChatFormatting.GOLD)
-                        	        .append(Component.literal("♫ ")
-                        	        		.withStyle(ChatFormatting.AQUA))
-                        	        .append(Component.literal(displayName)
-                        	            .withStyle(ChatFormatting.AQUA, ChatFormatting.BOLD))
-                        	        .append(Component.literal(" ♫")
-                        	            .withStyle(ChatFormatting.AQUA))
-                        	);                        
-                        System.out.println("[RegionVisualizer] " + player.getName().getString() + " ha entrado en " + currentRegion);
-                    } else {
-                        NetworkHandler.sendOverlayMessage(player, Component.literal("Formato de audio no soportado: " + musicFile).withStyle(ChatFormatting.RED));
-                        System.out.println("[RegionVisualizer] Formato no válido: " + musicFile);
-                    }
-                });
-            } else if (last != null) {
-                Optional<Region> lastRegionOpt = regionManager.getRegionByName(last);
-                String musicCommand = lastRegionOpt.map(region -> "STOP:" + region.isFadeEnabled()).orElse("STOP:false");
-                NetworkHandler.sendPlayMusic(player, musicCommand);
-                
-                // Mensaje al jugador en la HUD superpuesta.
-                NetworkHandler.sendOverlayMessage(player, 
-                	    Component.literal("⏹ Música detenida")
-                	        .withStyle(ChatFormatting.RED, ChatFormatting.BOLD)
-                	);
-                
-                System.out.println("[RegionVisualizer] " + player.getName().getString() + " salió de la región.");
-            }
-            lastRegion.put(player, currentRegion);
-        }
+    public void onServerStopping(ServerStoppingEvent event) {
+        // El diario va en segundo plano: al detener el servidor se escribe lo pendiente y se espera.
+        regionManager.flushSaves();
     }
 
-    // Método para validar extensiones de audio
-    private boolean isValidAudioFile(String fileName) {
-        if (fileName == null || fileName.isEmpty()) {
-            return false;
-        }
-        String lowerName = fileName.toLowerCase();
-        return lowerName.endsWith(".ogg") || lowerName.endsWith(".wav");
+    @SubscribeEvent
+    public void onServerStopped(ServerStoppedEvent event) {
+        // El mundo ya se guardó con las regiones: se vacía el diario antes de salir.
+        regionManager.flushSaves();
     }
-    // Método para remover la extensión
-    private String removeFileExtension(String fileName) {
-        if (fileName == null || fileName.isEmpty()) {
-            return fileName;
+
+    @SubscribeEvent
+    public void onLevelSave(LevelEvent.Save event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            regionManager.onLevelSaved(level);
         }
-        int lastDot = fileName.lastIndexOf('.');
-        return lastDot > 0 ? fileName.substring(0, lastDot) : fileName;
     }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) return;
+        // El planificador reparte las revisiones de todos los jugadores a lo largo de la ventana configurada.
+        regionCheckScheduler.tick(event.getServer());
+        regionManager.updateResidentShards(event.getServer());
+        // Después de cargar fragmentos: el espejo de cada cliente refleja lo que quedó en memoria.
+        regionMirrorSync.tick(event.getServer());
+        musicTransfers.tick();
+        // Al final: todo lo que las transiciones de este tick mandaron a cada jugador sale en un solo paquete.
+        NetworkHandler.flushOutbound();
+    }
+
     public static String getCurrentRegion(Level level, BlockPos pos) {
-        return regionManager.getRegions().stream()
-            .filter(region -> region.contains(pos))
+        return regionManager.getRegionContaining(level.dimension(), pos)
             .map(Region::getName)
-            .findFirst()
             .orElse(null);
     }
     
     @SubscribeEvent
     public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
         if (event.getEntity() instanceof ServerPlayer player) {
+            regionCheckScheduler.add(player);
             try {
-                NetworkHandler.sendPlayMusic(player, "INIT");
+                // El diccionario va primero: todo lo que siga usa sus ids.
+                NetworkHandler.sendTrackDictionary(player, musicTracks.getTracks());
+                NetworkHandler.sendMusic(player, PlayMusicPacket.INIT);
                 System.out.println("[RegionVisualizer] 🎵 Sistema de música inicializado para: " + player.getName().getString());
             } catch (Exception e) {
                 System.err.println("[RegionVisualizer] Error inicializando música para " + player.getName().getString() + ": " + e.getMessage());
@@ -181,6 +176,25 @@ public class RegionVisualizer {
         }
     }
 
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            regionCheckScheduler.remove(player);
+            regionTracker.evict(player);
+            regionMirrorSync.remove(player);
+            NetworkHandler.discardOutbound(player);
+            musicTransfers.remove(player);
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+        // El estado guardado es de la dimensión anterior: se descarta y la próxima revisión parte de cero.
+        if (event.getEntity() instanceof ServerPlayer player) {
+            regionTracker.evict(player);
+        }
+    }
+
     // MÉTODOS SOLO CLIENTE - Separados en una clase aparte llamada ClientEventHandler.java
     private void onClientSetup(final FMLClientSetupEvent event) {
         // Solo inicializar cliente si estamos en el lado cliente
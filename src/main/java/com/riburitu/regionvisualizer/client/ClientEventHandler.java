@@ -1,12 +1,15 @@
 package com.riburitu.regionvisualizer.client;
 
 import com.riburitu.regionvisualizer.client.RegionRenderer;
+import com.riburitu.regionvisualizer.client.sound.ClientMusicTracks;
 import com.riburitu.regionvisualizer.client.sound.MusicConfigScreen;
+import com.riburitu.regionvisualizer.client.sound.MusicDownloads;
 import com.riburitu.regionvisualizer.client.sound.MusicManager;
 
 import net.minecraftforge.client.event.ScreenEvent;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.level.LevelEvent;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
@@ -69,6 +72,14 @@ public class ClientEventHandler {
         }
     }
 
+    @SubscribeEvent
+    public void onRenderTick(TickEvent.RenderTickEvent event) {
+        // Una revisión por frame contra el espejo de regiones: la música cambia sin esperar al servidor.
+        if (event.phase == TickEvent.Phase.START) {
+            RegionMirror.onFrame();
+        }
+    }
+
     @SubscribeEvent
     public void onLevelUnload(LevelEvent.Unload event) {
         // Detectar salida del mundo en singleplayer
@@ -82,6 +93,9 @@ public class ClientEventHandler {
     public void onPlayerLoggedOut(net.minecraftforge.client.event.ClientPlayerNetworkEvent.LoggingOut event) {
         // Limpiar recursos al desconectarse (singleplayer o multiplayer)
         MusicManager.onPlayerLoggedOut();
+        ClientMusicTracks.clear();
+        MusicDownloads.clear();
+        RegionMirror.clear();
     }
     @SubscribeEvent
     public void onScreenOpen(ScreenEvent event) {
@@ -0,0 +1,275 @@
+package com.riburitu.regionvisualizer.client;
+
+import com.riburitu.regionvisualizer.client.sound.ClientMusicTracks;
+import com.riburitu.regionvisualizer.client.sound.MusicManager;
+import com.riburitu.regionvisualizer.network.NetworkHandler;
+import com.riburitu.regionvisualizer.network.PacketRegionDelta;
+import com.riburitu.regionvisualizer.network.PacketRegionMirror;
+import com.riburitu.regionvisualizer.network.PacketRegionResync;
+import com.riburitu.regionvisualizer.util.RegionHysteresis;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.player.LocalPlayer;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Copia local de las regiones de la dimensión actual (ver {@link PacketRegionMirror}), al día
+ * con las diferencias por revisión de {@link PacketRegionDelta}. En cada frame revisa la
+ * región del jugador y, si cambió, arranca o detiene la música en el acto, con las mismas
+ * reglas que el servidor. Cuando llega la orden del servidor para esa
+ * misma pista ya está sonando y no se repite.
+ *
+ * Solo se usa en el hilo principal del cliente.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class RegionMirror {
+    // Prioridad mayor primero, luego la región más pequeña; el id desempata.
+    private static final Comparator<PacketRegionMirror.Entry> ORDER = Comparator
+        .comparingInt(PacketRegionMirror.Entry::priority).reversed()
+        .thenComparingLong(RegionMirror::volume)
+        .thenComparingInt(PacketRegionMirror.Entry::id);
+
+    private static final int NO_PENDING = -1;
+
+    private static ResourceKey<Level> dimension;
+    private static int revision;
+    private static boolean resyncRequested;
+    private static final Int2ObjectMap<PacketRegionMirror.Entry> byId = new Int2ObjectOpenHashMap<>();
+    private static List<PacketRegionMirror.Entry> entries = List.of();
+    // Límites de las regiones en orden de precedencia, seis enteros por región.
+    private static int[] bounds = new int[0];
+    private static long lastPos = Long.MIN_VALUE;
+    private static int currentId;
+    // Pista y fade de la región actual, tal como estaban al entrar: al salir solo se detiene esa pista.
+    private static int currentTrackId;
+    private static boolean currentFade;
+    // Región que correspondería con la histéresis aplicada, y desde cuándo.
+    private static int targetId;
+    private static int pendingId = NO_PENDING;
+    private static long pendingSince;
+    private static RegionHysteresis hysteresis = RegionHysteresis.NONE;
+    // Conjunto completo que está llegando en páginas; se aplica entero con la última.
+    private static ResourceKey<Level> pagedDimension;
+    private static int pagedRevision;
+    private static int nextPage;
+    private static List<PacketRegionMirror.Entry> pagedEntries = new ArrayList<>();
+
+    private RegionMirror() {
+    }
+
+    /**
+     * Junta las páginas de un conjunto completo. La página 0 empieza uno nuevo; si falta una
+     * página se descarta lo juntado y se pide el conjunto otra vez.
+     */
+    public static void applyPage(ResourceKey<Level> newDimension, int newRevision, int page, boolean last,
+                                 List<PacketRegionMirror.Entry> newEntries, RegionHysteresis newHysteresis) {
+        if (page == 0) {
+            pagedDimension = newDimension;
+            pagedRevision = newRevision;
+            pagedEntries = new ArrayList<>();
+        } else if (page != nextPage || !newDimension.equals(pagedDimension) || newRevision != pagedRevision) {
+            pagedDimension = null;
+            pagedEntries = new ArrayList<>();
+            System.out.println("[RegionVisualizer] ⚠️ Falta una página de regiones, pidiendo resincronización");
+            NetworkHandler.CHANNEL.sendToServer(new PacketRegionResync(newDimension));
+            return;
+        }
+        pagedEntries.addAll(newEntries);
+        nextPage = page + 1;
+        if (last) {
+            List<PacketRegionMirror.Entry> complete = pagedEntries;
+            pagedDimension = null;
+            pagedEntries = new ArrayList<>();
+            apply(newDimension, newRevision, complete, newHysteresis);
+        }
+    }
+
+    private static void apply(ResourceKey<Level> newDimension, int newRevision, List<PacketRegionMirror.Entry> newEntries,
+                             RegionHysteresis newHysteresis) {
+        if (!newDimension.equals(dimension)) {
+            // Lo que sonaba en la dimensión anterior lo detiene el servidor al cambiar de dimensión.
+            currentId = 0;
+        }
+        dimension = newDimension;
+        revision = newRevision;
+        hysteresis = newHysteresis;
+        resyncRequested = false;
+        byId.clear();
+        for (PacketRegionMirror.Entry entry : newEntries) {
+            byId.put(entry.id(), entry);
+        }
+        rebuild();
+    }
+
+    /**
+     * Aplica una diferencia solo si sigue exactamente a la revisión local. Las repetidas o
+     * atrasadas se ignoran; si falta alguna intermedia se pide el conjunto completo una vez.
+     */
+    public static void applyDelta(ResourceKey<Level> deltaDimension, int deltaRevision, List<PacketRegionDelta.Change> changes) {
+        // De otra dimensión: el conjunto completo de la nueva ya viene en camino.
+        if (!deltaDimension.equals(dimension) || deltaRevision <= revision) return;
+        if (deltaRevision != revision + 1) {
+            if (!resyncRequested) {
+                resyncRequested = true;
+                System.out.println("[RegionVisualizer] ⚠️ Faltan revisiones de regiones (" + revision + " -> " + deltaRevision + "), pidiendo resincronización");
+                NetworkHandler.CHANNEL.sendToServer(new PacketRegionResync(dimension));
+            }
+            return;
+        }
+        for (PacketRegionDelta.Change change : changes) {
+            if (change.op() == PacketRegionDelta.Op.REMOVE) {
+                byId.remove(change.id());
+            } else {
+                byId.put(change.id(), change.entry());
+            }
+        }
+        revision = deltaRevision;
+        rebuild();
+    }
+
+    private static void rebuild() {
+        List<PacketRegionMirror.Entry> sorted = new ArrayList<>(byId.values());
+        sorted.sort(ORDER);
+        entries = sorted;
+        bounds = new int[sorted.size() * 6];
+        for (int i = 0; i < sorted.size(); i++) {
+            PacketRegionMirror.Entry entry = sorted.get(i);
+            int o = i * 6;
+            bounds[o] = entry.minX();
+            bounds[o + 1] = entry.minY();
+            bounds[o + 2] = entry.minZ();
+            bounds[o + 3] = entry.maxX();
+            bounds[o + 4] = entry.maxY();
+            bounds[o + 5] = entry.maxZ();
+        }
+        // Las regiones cambiaron: revisar en el próximo frame aunque el jugador no se mueva.
+        lastPos = Long.MIN_VALUE;
+    }
+
+    private static long volume(PacketRegionMirror.Entry entry) {
+        long dx = (long) entry.maxX() - entry.minX() + 1L;
+        long dy = (long) entry.maxY() - entry.minY() + 1L;
+        long dz = (long) entry.maxZ() - entry.minZ() + 1L;
+        return dx * dy * dz;
+    }
+
+    public static void clear() {
+        dimension = null;
+        revision = 0;
+        resyncRequested = false;
+        byId.clear();
+        entries = List.of();
+        bounds = new int[0];
+        lastPos = Long.MIN_VALUE;
+        pagedDimension = null;
+        pagedEntries = new ArrayList<>();
+        currentId = 0;
+        currentTrackId = 0;
+        currentFade = false;
+        targetId = 0;
+        pendingId = NO_PENDING;
+        hysteresis = RegionHysteresis.NONE;
+    }
+
+    /**
+     * Se llama una vez por frame. Solo busca cuando el jugador cambió de bloque; la transición
+     * se aplica cuando la región de destino se mantuvo el tiempo mínimo, igual que en el servidor.
+     */
+    public static void onFrame() {
+        Minecraft minecraft = Minecraft.getInstance();
+        LocalPlayer player = minecraft.player;
+        if (player == null || minecraft.level == null || dimension == null || !minecraft.level.dimension().equals(dimension)) {
+            return;
+        }
+        BlockPos pos = player.blockPosition();
+        long packed = pos.asLong();
+        if (packed != lastPos) {
+            lastPos = packed;
+            targetId = target(pos.getX(), pos.getY(), pos.getZ());
+        }
+        if (targetId == currentId) {
+            pendingId = NO_PENDING;
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (targetId != pendingId) {
+            pendingId = targetId;
+            pendingSince = now;
+        }
+        if (now - pendingSince < hysteresis.minDwellMillis()) return;
+        pendingId = NO_PENDING;
+
+        PacketRegionMirror.Entry entry = byId.get(targetId);
+        if (entry != null) {
+            play(entry);
+            currentTrackId = entry.trackId();
+            currentFade = (entry.flags() & PacketRegionMirror.FLAG_FADE) != 0;
+        } else {
+            // Como el servidor al salir: solo la pista de la región que se deja, o cualquiera si no tenía.
+            int playing = ClientMusicTracks.getPlayingId();
+            if (playing != 0 && (currentTrackId == 0 || playing == currentTrackId)) {
+                MusicManager.stop(currentFade);
+                ClientMusicTracks.setPlayingId(0);
+            }
+            currentTrackId = 0;
+            currentFade = false;
+        }
+        currentId = targetId;
+    }
+
+    /**
+     * Las mismas reglas que {@code RegionTracker}: se entra con margen, se sale con margen y una
+     * región de más precedencia puede quitarle el lugar a la actual.
+     */
+    private static int target(int x, int y, int z) {
+        int index = find(x, y, z);
+        PacketRegionMirror.Entry candidate = index >= 0 ? entries.get(index) : null;
+        int candidateId = candidate != null ? candidate.id() : 0;
+        if (candidateId == currentId) return currentId;
+
+        PacketRegionMirror.Entry committed = byId.get(currentId);
+        boolean near = committed != null && hysteresis.holds(
+            committed.minX(), committed.minY(), committed.minZ(),
+            committed.maxX(), committed.maxY(), committed.maxZ(), x, y, z);
+        if (candidate != null && !hysteresis.admits(bounds[index * 6], bounds[index * 6 + 1], bounds[index * 6 + 2],
+                bounds[index * 6 + 3], bounds[index * 6 + 4], bounds[index * 6 + 5], x, y, z)) {
+            return near ? currentId : 0;
+        }
+        if (near && (candidate == null || ORDER.compare(candidate, committed) >= 0)) {
+            return currentId;
+        }
+        return candidateId;
+    }
+
+    private static void play(PacketRegionMirror.Entry entry) {
+        int trackId = entry.trackId();
+        // Sin pista reproducible la región no cambia lo que suena, igual que en el servidor.
+        if (trackId == 0 || ClientMusicTracks.getPlayingId() == trackId) return;
+        String fileName = ClientMusicTracks.getPlayableName(trackId);
+        if (fileName == null) return;
+        MusicManager.play(fileName, (entry.flags() & PacketRegionMirror.FLAG_LOOP) != 0, (entry.flags() & PacketRegionMirror.FLAG_FADE) != 0);
+        ClientMusicTracks.setPlayingId(trackId);
+    }
+
+    private static int find(int x, int y, int z) {
+        int[] b = bounds;
+        for (int o = 0; o < b.length; o += 6) {
+            if (x >= b[o] && y >= b[o + 1] && z >= b[o + 2] && x <= b[o + 3] && y <= b[o + 4] && z <= b[o + 5]) {
+                return o / 6;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,64 @@
+package com.riburitu.regionvisualizer.client.sound;
+
+import com.riburitu.regionvisualizer.util.MusicTrack;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.util.List;
+
+/**
+ * Copia en el cliente del diccionario de pistas del servidor. Solo se usa en el hilo
+ * principal del cliente (los paquetes la tocan desde enqueueWork).
+ */
+public final class ClientMusicTracks {
+    private static final Int2ObjectMap<MusicTrack> tracks = new Int2ObjectOpenHashMap<>();
+    // Pista que el servidor mandó reproducir por última vez, 0 si ninguna.
+    private static int playingId;
+
+    private ClientMusicTracks() {
+    }
+
+    /**
+     * Aplica el diccionario completo ({@code reset}) o las pistas nuevas.
+     */
+    public static void apply(boolean reset, List<MusicTrack> added) {
+        if (reset) {
+            tracks.clear();
+            playingId = 0;
+        }
+        for (MusicTrack track : added) {
+            tracks.put(track.id(), track);
+        }
+        System.out.println("[RegionVisualizer] 🎼 Diccionario de música: " + added.size() + (reset ? " pistas" : " pistas nuevas") + ", total " + tracks.size());
+    }
+
+    public static MusicTrack get(int id) {
+        return tracks.get(id);
+    }
+
+    public static String getFileName(int id) {
+        MusicTrack track = tracks.get(id);
+        return track != null ? track.fileName() : null;
+    }
+
+    /**
+     * Archivo a reproducir para la pista, relativo a la carpeta de música, o null si no se conoce.
+     */
+    public static String getPlayableName(int id) {
+        MusicTrack track = tracks.get(id);
+        return track != null ? MusicDownloads.playableName(track) : null;
+    }
+
+    public static int getPlayingId() {
+        return playingId;
+    }
+
+    public static void setPlayingId(int id) {
+        playingId = id;
+    }
+
+    public static void clear() {
+        tracks.clear();
+        playingId = 0;
+    }
+}
@@ -0,0 +1,223 @@
+package com.riburitu.regionvisualizer.client.sound;
+
+import com.riburitu.regionvisualizer.network.NetworkHandler;
+import com.riburitu.regionvisualizer.network.PacketMusicAck;
+import com.riburitu.regionvisualizer.network.PacketMusicRequest;
+import com.riburitu.regionvisualizer.util.MusicTrack;
+import com.riburitu.regionvisualizer.util.MusicTrackRegistry;
+
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Descarga del servidor las pistas del diccionario que faltan en la carpeta music/ local o
+ * que no coinciden con su SHA-256. Lo descargado se guarda en music/.downloads/ con el hash
+ * como nombre, así una descarga cortada se reanuda al volver a entrar; al completarse y
+ * verificarse el hash pasa a music/.server/, también con el hash como nombre. Los archivos
+ * del usuario en music/ nunca se tocan: si no coinciden se reproduce la copia del servidor.
+ *
+ * El hash y el disco se manejan en un solo hilo aparte, que también mantiene el orden de
+ * los trozos; el hilo principal solo recibe los paquetes.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class MusicDownloads {
+    private static final String PARTIAL_FOLDER = ".downloads";
+    private static final String SERVER_FOLDER = ".server";
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "RegionVisualizer-Downloads");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Hash de los archivos locales ya revisados, mientras no cambien de tamaño ni de fecha.
+    private static final Map<Path, KnownHash> knownHashes = new ConcurrentHashMap<>();
+    // Solo en el hilo de descargas: último offset pedido por pista, para no repetir pedidos.
+    private static final Map<Integer, Long> requested = new HashMap<>();
+    // Pistas cuya copia local no coincide y se reproducen desde music/.server/.
+    private static final Map<Integer, String> serverCopies = new ConcurrentHashMap<>();
+    // Cambia al desconectarse; el trabajo pendiente de una sesión anterior se descarta.
+    private static volatile int session;
+
+    private record KnownHash(long size, long modified, byte[] sha256) {
+    }
+
+    private MusicDownloads() {
+    }
+
+    /**
+     * Revisa en segundo plano las pistas recién llegadas en el diccionario y pide las que faltan.
+     */
+    public static void check(List<MusicTrack> tracks) {
+        int expected = session;
+        List<MusicTrack> pending = List.copyOf(tracks);
+        WORKER.execute(() -> {
+            for (MusicTrack track : pending) {
+                if (session != expected) return;
+                long offset = missingFrom(track);
+                if (offset >= 0) request(expected, track.id(), offset);
+            }
+        });
+    }
+
+    public static void onChunk(int trackId, long offset, long size, boolean last, byte[] data) {
+        MusicTrack track = ClientMusicTracks.get(trackId);
+        if (track == null || track.sha256().length == 0 || !isSafeName(track.fileName())) return;
+        int expected = session;
+        WORKER.execute(() -> {
+            if (session == expected) write(expected, track, offset, size, last, data);
+        });
+    }
+
+    public static void clear() {
+        session++;
+        serverCopies.clear();
+        WORKER.execute(requested::clear);
+    }
+
+    /**
+     * Archivo a reproducir para la pista, relativo a music/: la copia del servidor si ya se
+     * descargó porque la local falta o no coincide, y si no el nombre que usa el servidor.
+     */
+    public static String playableName(MusicTrack track) {
+        return serverCopies.getOrDefault(track.id(), track.fileName());
+    }
+
+    /**
+     * Desde qué byte hay que pedir la pista, o -1 si ya está o el servidor no la tiene.
+     */
+    private static long missingFrom(MusicTrack track) {
+        if (track.sha256().length == 0) return -1;
+        if (!isSafeName(track.fileName())) {
+            System.err.println("[RegionVisualizer] ⚠️ Nombre de pista no válido, no se descarga: " + track.fileName());
+            return -1;
+        }
+        Path target = MusicManager.getMusicFolderClient().resolve(track.fileName());
+        try {
+            if (Files.isRegularFile(target) && Arrays.equals(hashOf(target), track.sha256())) {
+                serverCopies.remove(track.id());
+                return -1;
+            }
+            Path copy = MusicManager.getMusicFolderClient().resolve(serverName(track));
+            if (Files.isRegularFile(copy) && Arrays.equals(hashOf(copy), track.sha256())) {
+                serverCopies.put(track.id(), serverName(track));
+                return -1;
+            }
+            Path partial = partialFile(track);
+            return Files.isRegularFile(partial) ? Files.size(partial) : 0;
+        } catch (IOException e) {
+            System.err.println("[RegionVisualizer] Error revisando " + target + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static void write(int expected, MusicTrack track, long offset, long size, boolean last, byte[] data) {
+        Path partial = partialFile(track);
+        try {
+            long length = Files.isRegularFile(partial) ? Files.size(partial) : 0;
+            if (offset > length) {
+                // Se perdió un trozo: se pide de nuevo desde lo que hay en disco.
+                request(expected, track.id(), length);
+                return;
+            }
+            if (offset == 0) {
+                System.out.println("[RegionVisualizer] 📥 Descargando " + track.fileName() + " (" + MusicManager.formatFileSize(size) + ")");
+            }
+            Files.createDirectories(partial.getParent());
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Un offset menor significa que el servidor reinició el envío desde ahí.
+                if (offset < length) channel.truncate(offset);
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, offset + buffer.position());
+                }
+            }
+            requested.remove(track.id());
+            send(expected, new PacketMusicAck(track.id(), offset + data.length));
+            if (last) finish(track, partial);
+        } catch (IOException e) {
+            System.err.println("[RegionVisualizer] ❌ Error guardando " + track.fileName() + ": " + e.getMessage());
+        }
+    }
+
+    private static void finish(MusicTrack track, Path partial) throws IOException {
+        if (!Arrays.equals(MusicTrackRegistry.hash(partial), track.sha256())) {
+            // No se vuelve a pedir en esta sesión para no repetir una descarga que no coincide.
+            Files.deleteIfExists(partial);
+            System.err.println("[RegionVisualizer] ❌ " + track.fileName() + " descargado no coincide con el hash del servidor, descartado");
+            return;
+        }
+        // El nombre es el hash: reemplazar solo puede poner el mismo contenido.
+        Path target = MusicManager.getMusicFolderClient().resolve(serverName(track));
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        knownHashes.put(target, new KnownHash(Files.size(target), Files.getLastModifiedTime(target).toMillis(), track.sha256()));
+        serverCopies.put(track.id(), serverName(track));
+        System.out.println("[RegionVisualizer] ✅ Música descargada: " + track.fileName());
+    }
+
+    private static void request(int expected, int trackId, long offset) {
+        Long previous = requested.get(trackId);
+        if (previous != null && previous == offset) return;
+        requested.put(trackId, offset);
+        send(expected, new PacketMusicRequest(trackId, offset));
+    }
+
+    private static void send(int expected, Object packet) {
+        Minecraft.getInstance().execute(() -> {
+            if (session == expected && Minecraft.getInstance().getConnection() != null) {
+                NetworkHandler.CHANNEL.sendToServer(packet);
+            }
+        });
+    }
+
+    private static byte[] hashOf(Path file) throws IOException {
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        KnownHash known = knownHashes.get(file);
+        if (known != null && known.size() == size && known.modified() == modified) return known.sha256();
+        byte[] sha256 = MusicTrackRegistry.hash(file);
+        knownHashes.put(file, new KnownHash(size, modified, sha256));
+        return sha256;
+    }
+
+    // music/.server/<sha256>.<extensión>, relativo a music/.
+    private static String serverName(MusicTrack track) {
+        String fileName = track.fileName();
+        String extension = fileName.substring(fileName.lastIndexOf('.')).toLowerCase(Locale.ROOT);
+        return SERVER_FOLDER + "/" + HexFormat.of().formatHex(track.sha256()) + extension;
+    }
+
+    private static Path partialFile(MusicTrack track) {
+        return MusicManager.getMusicFolderClient().resolve(PARTIAL_FOLDER).resolve(HexFormat.of().formatHex(track.sha256()) + ".part");
+    }
+
+    // El nombre viene del servidor: solo un archivo de audio directamente dentro de music/.
+    private static boolean isSafeName(String fileName) {
+        return MusicTrackRegistry.isSupported(fileName)
+            && !fileName.contains("/") && !fileName.contains("\\") && !fileName.contains("..")
+            && !fileName.startsWith(".");
+    }
+}
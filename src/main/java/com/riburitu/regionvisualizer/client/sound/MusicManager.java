@@ -161,8 +161,15 @@ public class MusicManager {
      * Reproduce un archivo de música
      */
     public static void play(String filename, boolean loop, boolean fade) {
+        play(filename, loop, fade, fadeDuration);
+    }
+
+    /**
+     * Reproduce un archivo con una duración de fade propia, sin cambiar la configurada.
+     */
+    public static void play(String filename, boolean loop, boolean fade, float fadeSeconds) {
         synchronized (audioLock) {
-            playInternal(filename, loop, fade);
+            playInternal(filename, loop, fade, fadeSeconds);
         }
     }
     public static synchronized void playUI(String filename, boolean loop, boolean fade) {
@@ -240,8 +247,12 @@ public class MusicManager {
      * Detiene la música actual
      */
     public static void stop(boolean fade) {
+        stop(fade, fadeDuration);
+    }
+
+    public static void stop(boolean fade, float fadeSeconds) {
         synchronized (audioLock) {
-            stopInternal(fade);
+            stopInternal(fade, fadeSeconds);
         }
     }
     
@@ -298,27 +309,20 @@ public class MusicManager {
             }
             
             Level level = player.level();
-            String regionName = RegionVisualizer.getCurrentRegion(level, player.blockPosition());
+            RegionManager regionManager = RegionVisualizer.INSTANCE.getRegionManager();
+            Optional<Region> regionOpt = regionManager.getRegionContaining(level.dimension(), player.blockPosition());
             
-            if (regionName != null) {
-                RegionManager regionManager = RegionVisualizer.INSTANCE.getRegionManager();
-                Optional<Region> regionOpt = regionManager.getRegionByName(regionName);
+            if (regionOpt.isPresent()) {
+                Region region = regionOpt.get();
+                System.out.println("[RegionVisualizer] 🎵 Reanudando música para región: " + region.getName());
                 
-                if (regionOpt.isPresent()) {
-                    Region region = regionOpt.get();
-                    System.out.println("[RegionVisualizer] 🎵 Reanudando música para región: " + regionName);
-                    
-                    // Limpiar recursos y reinicializar
-                    cleanupResources();
-                    cleanupPreviousResources();
-                    initialized = false;
-                    initialize();
-                    
-                    playInternal(region.getMusicFile(), region.isLoopEnabled(), region.isFadeEnabled());
-                } else {
-                    System.out.println("[RegionVisualizer] ⚠️ No se encontró región: " + regionName);
-                    sendMessageSync("⚠️ Región no encontrada: " + regionName, ChatFormatting.YELLOW);
-                }
+                // Limpiar recursos y reinicializar
+                cleanupResources();
+                cleanupPreviousResources();
+                initialized = false;
+                initialize();
+                
+                playInternal(region.getMusicFile(), region.isLoopEnabled(), region.isFadeEnabled());
             } else {
                 System.out.println("[RegionVisualizer] ⚠️ No estás en una región con música");
 //                sendMessageSync("⚠️ No estás en una región con música", ChatFormatting.YELLOW);
@@ -361,10 +365,6 @@ public class MusicManager {
                     handleGetVolumeCommand();
                 } else if (command.equals("CONFIG")) {
                     handleConfigCommand();
-                } else if (command.startsWith("MUSIC:")) {
-                    handleMusicCommand(command);
-                } else if (command.startsWith("STOP:")) {
-                    handleStopCommand(command);
                 } else {
                     handleNormalCommands(command);
                 }
@@ -630,11 +630,15 @@ public class MusicManager {
     // ========================================
     
     private static void playInternal(String filename, boolean loop, boolean fade) {
+        playInternal(filename, loop, fade, fadeDuration);
+    }
+
+    private static void playInternal(String filename, boolean loop, boolean fade, float fadeSeconds) {
         synchronized (audioLock) {
             System.out.println("[RegionVisualizer] 🎵 Iniciando playInternal: " + filename);
 
             // Preparar transición de clips
-            prepareClipTransition(fade);
+            prepareClipTransition(fade, fadeSeconds);
 
             // Validar archivo
             if (!validateMusicFile(filename)) {
@@ -663,7 +667,7 @@ public class MusicManager {
 
                 // Iniciar reproducción
                 if (fade && volumeControl != null) {
-                    fadeIn();
+                    fadeIn(fadeSeconds);
                 } else {
                     setClipVolume(modVolume);
                     currentClip.setFramePosition(0);
@@ -681,6 +685,10 @@ public class MusicManager {
     }
     
     private static void stopInternal(boolean fade) {
+        stopInternal(fade, fadeDuration);
+    }
+
+    private static void stopInternal(boolean fade, float fadeSeconds) {
         synchronized (audioLock) {
             // Cancelar fade-out anterior
             if (isPreviousPlaying.get()) {
@@ -706,7 +714,7 @@ public class MusicManager {
                 volumeControl = null;
                 isPlaying.set(false);
                 
-                fadeOutPrevious();
+                fadeOutPrevious(fadeSeconds);
             } else {
                 cleanupResources();
                 System.out.println("[RegionVisualizer] 🎵 Música detenida, fade=" + fade);
@@ -718,12 +726,12 @@ public class MusicManager {
     // SISTEMA DE FADE
     // ========================================
     
-    private static void fadeIn() {
+    private static void fadeIn(float seconds) {
         fadeExecutor.submit(() -> {
             float targetVolume = modVolume;
             float startVolume = fadeInStart * modVolume;
             long startTime = System.currentTimeMillis();
-            long endTime = startTime + (long)(fadeDuration * 1000);
+            long endTime = startTime + (long)(seconds * 1000);
 
             synchronized (audioLock) {
                 if (currentClip == null || !isPlaying.get()) {
@@ -745,7 +753,7 @@ public class MusicManager {
                         return;
                     }
                     
-                    float progress = (System.currentTimeMillis() - startTime) / (float)(fadeDuration * 1000);
+                    float progress = (System.currentTimeMillis() - startTime) / (float)(seconds * 1000);
                     progress = Math.min(1.0f, Math.max(0.0f, progress));
                     float currentVolume = startVolume + (targetVolume - startVolume) * progress;
                     currentVolume = Math.min(currentVolume, modVolume);
@@ -769,11 +777,11 @@ public class MusicManager {
         });
     }
 
-    private static void fadeOutPrevious() {
+    private static void fadeOutPrevious(float seconds) {
         fadeExecutor.submit(() -> {
             float startVolume = modVolume;
             long startTime = System.currentTimeMillis();
-            long endTime = startTime + (long)(fadeDuration * 1000);
+            long endTime = startTime + (long)(seconds * 1000);
 
             synchronized (audioLock) {
                 if (previousClip == null || !previousClip.isOpen() || !previousClip.isRunning()) {
@@ -792,7 +800,7 @@ public class MusicManager {
                         break;
                     }
                     
-                    float progress = (System.currentTimeMillis() - startTime) / (float)(fadeDuration * 1000);
+                    float progress = (System.currentTimeMillis() - startTime) / (float)(seconds * 1000);
                     progress = Math.min(1.0f, Math.max(0.0f, progress));
                     float currentVolume = startVolume * (1.0f - progress);
                     setPreviousClipVolume(currentVolume);
@@ -2185,43 +2193,40 @@ public class MusicManager {
     
     private static void handleVolumeCommand(String command) {
         try {
-            String volumeStr = command.substring(7);
-            float volume = Float.parseFloat(volumeStr);
-            setVolume(volume);
-            sendMessageSync(" Volumen del mod establecido: " + Math.round(volume * 100) + "%", ChatFormatting.AQUA);
+            applyServerVolume(Float.parseFloat(command.substring(7)));
         } catch (NumberFormatException e) {
             sendMessageSync("❌ Volumen inválido", ChatFormatting.RED);
         }
     }
     
     private static void handleGetVolumeCommand() {
-        float currentVol = getCurrentVolume();
-        sendMessageSync("Volumen actual del mod: " + Math.round(currentVol * 100) + "%", ChatFormatting.AQUA);
+        showCurrentVolume();
     }
     
     private static void handleConfigCommand() {
+        openConfigScreen();
+    }
+
+    /**
+     * Volumen enviado por el servidor ({@code /playmusic <jugador> volume}).
+     */
+    public static void applyServerVolume(float volume) {
+        setVolume(volume);
+        sendMessageSync(" Volumen del mod establecido: " + Math.round(volume * 100) + "%", ChatFormatting.AQUA);
+    }
+
+    public static void showCurrentVolume() {
+        float currentVol = getCurrentVolume();
+        sendMessageSync("Volumen actual del mod: " + Math.round(currentVol * 100) + "%", ChatFormatting.AQUA);
+    }
+
+    public static void openConfigScreen() {
         Minecraft.getInstance().execute(() -> {
             Minecraft.getInstance().setScreen(new MusicConfigScreen(Minecraft.getInstance().screen));
         });
         System.out.println("[RegionVisualizer] Abriendo MusicConfigScreen");
     }
-    
-    private static void handleMusicCommand(String command) {
-        String[] parts = command.split(":", 4);
-        if (parts.length < 4) {
-            sendMessageSync("Comando de música inválido", ChatFormatting.RED);
-            return;
-        }
-        String filename = parts[1];
-        boolean loop = Boolean.parseBoolean(parts[2]);
-        boolean fade = Boolean.parseBoolean(parts[3]);
-        play(filename, loop, fade);
-    }
-    
-    private static void handleStopCommand(String command) {
-        boolean fade = Boolean.parseBoolean(command.substring(5));
-        stop(fade);
-    }
+
     private static void printCacheStatus() {
         System.out.println("=== CACHE STATUS DETALLADO ===");
         
@@ -2481,7 +2486,7 @@ public class MusicManager {
     // MÉTODOS AUXILIARES DE REPRODUCCIÓN
     // ========================================
     
-    private static void prepareClipTransition(boolean fade) {
+    private static void prepareClipTransition(boolean fade, float fadeSeconds) {
         // Limpiar fade-out anterior
         if (isPreviousPlaying.get()) {
             isPreviousPlaying.set(false);
@@ -2499,7 +2504,7 @@ public class MusicManager {
             
             if (fade && previousVolumeControl != null && previousClip.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
                 shouldStopPrevious = true;
-                fadeOutPrevious();
+                fadeOutPrevious(fadeSeconds);
             } else {
                 cleanupPreviousResources();
             }
@@ -10,7 +10,9 @@ import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.suggestion.Suggestions;
 import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 
+import com.riburitu.regionvisualizer.RegionVisualizer;
 import com.riburitu.regionvisualizer.network.NetworkHandler;
+import com.riburitu.regionvisualizer.network.PlayMusicPacket;
 
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
@@ -30,7 +32,10 @@ public class PlayMusicCommand {
 	                .then(Commands.literal("start")
 	                    .then(Commands.argument("musicFile", StringArgumentType.string())
 	                    	.suggests(PlayMusicCommand::suggestMusicFiles)	// <--- autocompletado
-	                        .executes(ctx -> executePlayMusic(ctx)))))
+	                        .executes(ctx -> executePlayMusic(ctx, -1))
+	                        // playmusic <player> start <filename> <segundos de fade>
+	                        .then(Commands.argument("fadeSeconds", FloatArgumentType.floatArg(0.1f, 10.0f))
+	                            .executes(ctx -> executePlayMusic(ctx, FloatArgumentType.getFloat(ctx, "fadeSeconds")))))))
 
 	            // playmusic <player> volume <volumen>
 	            .then(Commands.argument("player", EntityArgument.player())
@@ -95,12 +100,17 @@ public class PlayMusicCommand {
 	    return builder.buildFuture();
 	}
 
-    private static int executePlayMusic(CommandContext<CommandSourceStack> ctx) {
+    private static int executePlayMusic(CommandContext<CommandSourceStack> ctx, float fadeSeconds) {
         try {
             ServerPlayer player = EntityArgument.getPlayer(ctx, "player");
-            String filename = StringArgumentType.getString(ctx, "filename");
-
-            NetworkHandler.sendPlayMusic(player, filename);
+            String filename = StringArgumentType.getString(ctx, "musicFile");
+
+            int trackId = RegionVisualizer.INSTANCE.getMusicTracks().idOf(filename);
+            if (trackId == PlayMusicPacket.NO_TRACK_ID) {
+                ctx.getSource().sendFailure(Component.literal("Formato de audio no soportado: " + filename).withStyle(ChatFormatting.RED));
+                return 0;
+            }
+            NetworkHandler.sendMusic(player, PlayMusicPacket.play(trackId, false, fadeSeconds > 0, fadeSeconds).withRestart());
             ctx.getSource().sendSuccess(() -> Component.literal("Reproduciendo música '" + filename + "' para " + player.getName().getString()).withStyle(ChatFormatting.GREEN), true);
             System.out.println("[RegionVisualizer] Enviado comando play: " + filename + " para " + player.getName().getString());
             return 1;
@@ -116,7 +126,7 @@ public class PlayMusicCommand {
             ServerPlayer player = EntityArgument.getPlayer(ctx, "player");
             float volume = FloatArgumentType.getFloat(ctx, "volume");
 
-            NetworkHandler.sendPlayMusic(player, "VOLUME:" + volume);
+            NetworkHandler.sendMusic(player, PlayMusicPacket.setVolume(volume));
             ctx.getSource().sendSuccess(() -> Component.literal("Volumen establecido a " + Math.round(volume * 100) + "% para " + player.getName().getString()).withStyle(ChatFormatting.GREEN), true);
             System.out.println("[RegionVisualizer] Enviado comando volume: " + volume + " para " + player.getName().getString());
             return 1;
@@ -131,7 +141,7 @@ public class PlayMusicCommand {
         try {
             ServerPlayer player = EntityArgument.getPlayer(ctx, "player");
 
-            NetworkHandler.sendPlayMusic(player, "STOP");
+            NetworkHandler.sendMusic(player, PlayMusicPacket.stop(false));
             ctx.getSource().sendSuccess(() -> Component.literal("Música detenida para " + player.getName().getString()).withStyle(ChatFormatting.YELLOW), true);
             System.out.println("[RegionVisualizer] Enviado comando stop para " + player.getName().getString());
             return 1;
@@ -146,7 +156,7 @@ public class PlayMusicCommand {
         try {
             ServerPlayer player = EntityArgument.getPlayer(ctx, "player");
 
-            NetworkHandler.sendPlayMusic(player, "LIST");
+            NetworkHandler.sendMusic(player, PlayMusicPacket.LIST);
             ctx.getSource().sendSuccess(() -> Component.literal("Lista de música enviada a " + player.getName().getString()).withStyle(ChatFormatting.GREEN), true);
             System.out.println("[RegionVisualizer] Enviado comando list para " + player.getName().getString());
             return 1;
@@ -161,7 +171,7 @@ public class PlayMusicCommand {
         try {
             ServerPlayer player = EntityArgument.getPlayer(ctx, "player");
 
-            NetworkHandler.sendPlayMusic(player, "GET_VOLUME");
+            NetworkHandler.sendMusic(player, PlayMusicPacket.GET_VOLUME);
             ctx.getSource().sendSuccess(() -> Component.literal("Solicitado volumen actual para " + player.getName().getString()).withStyle(ChatFormatting.GREEN), true);
             System.out.println("[RegionVisualizer] Enviado comando getvolume para " + player.getName().getString());
             return 1;
@@ -3,11 +3,13 @@ package com.riburitu.regionvisualizer.commands;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.suggestion.Suggestions;
 import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 
 import com.riburitu.regionvisualizer.util.Region;
+import com.riburitu.regionvisualizer.util.RegionExchange;
 import com.riburitu.regionvisualizer.util.RegionManager;
 import com.riburitu.regionvisualizer.RegionVisualizer;
 import com.riburitu.regionvisualizer.item.RegionSelectorItem;
@@ -18,21 +20,31 @@ import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
 import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
 import net.minecraftforge.network.PacketDistributor;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @SuppressWarnings("unused")
 public class RegionCommands {
     private final RegionManager regionManager;
+    // Una sola importación o exportación a la vez.
+    private final AtomicBoolean exchangeRunning = new AtomicBoolean();
 
     public RegionCommands(RegionManager regionManager) {
         this.regionManager = regionManager;
@@ -75,6 +87,17 @@ public class RegionCommands {
                 
                 .then(Commands.literal("here")
                     .executes(ctx -> executeRegionHere(ctx)))
+                
+                .then(Commands.literal("import")
+                    .then(Commands.argument("file", StringArgumentType.string())
+                        .suggests(RegionCommands::suggestImportFiles)
+                        .executes(ctx -> executeImport(ctx, false))
+                        .then(Commands.literal("replace")
+                            .executes(ctx -> executeImport(ctx, true)))))
+
+                .then(Commands.literal("export")
+                    .then(Commands.argument("file", StringArgumentType.string())
+                        .executes(ctx -> executeExport(ctx))))
         );
     }
     public void regedit(CommandDispatcher<CommandSourceStack> dispatcher) {
@@ -106,13 +129,25 @@ public class RegionCommands {
                     .then(Commands.argument("RegionTag", StringArgumentType.word())
                     	.suggests(RegionCommands::suggestRegions)
                         .executes(ctx -> executeEditPos(ctx))))
+                    
+                .then(Commands.literal("priority")
+                    .then(Commands.argument("RegionTag", StringArgumentType.word())
+                    	.suggests(RegionCommands::suggestRegions)
+                        .then(Commands.argument("priority", IntegerArgumentType.integer())
+                            .executes(ctx -> executeEditPriority(ctx)))))
         );
     }
     private static CompletableFuture<Suggestions> suggestRegions(CommandContext<CommandSourceStack> ctx, SuggestionsBuilder builder) {
         // Obtén el RegionManager desde la instancia global
         RegionManager regionManager = RegionVisualizer.INSTANCE.getRegionManager();
-        for (Region region : regionManager.getRegions()) {
-            builder.suggest(region.getName());
+        for (String name : regionManager.getRegionNames()) {
+            builder.suggest(name);
+        }
+        return builder.buildFuture();
+    }
+    private static CompletableFuture<Suggestions> suggestImportFiles(CommandContext<CommandSourceStack> ctx, SuggestionsBuilder builder) {
+        for (String name : RegionExchange.listImportFiles(ctx.getSource().getServer())) {
+            builder.suggest(StringArgumentType.escapeIfRequired(name));
         }
         return builder.buildFuture();
     }
@@ -162,7 +197,7 @@ public class RegionCommands {
             boolean loopEnabled = BoolArgumentType.getBool(ctx, "loop");
             System.out.println("[RegionVisualizer] 📥 Comando /region add recibido: name=" + name + ", musicFile=" + musicFile + ", loop=" + loopEnabled + ", fade=" + fade);
 
-            Region region = new Region(name, pos1, pos2, musicFile, loopEnabled, fade);
+            Region region = new Region(name, player.level().dimension(), pos1, pos2, musicFile, loopEnabled, fade);
             regionManager.addRegion(region);
             regionManager.saveRegions(player.serverLevel());
 
@@ -210,7 +245,8 @@ public class RegionCommands {
         }
         try {
             CommandSourceStack source = ctx.getSource();
-            List<Region> regions = regionManager.getRegions();
+            // Incluye las regiones de fragmentos que no están cargados.
+            List<String> regions = regionManager.getRegionNames();
             
             // Log de depuración para verificar el tamaño real
             System.out.println("[RegionVisualizer] Número de regiones a listar: " + regions.size());
@@ -221,11 +257,11 @@ public class RegionCommands {
                 // Construir un componente compuesto para el mensaje
                 MutableComponent message = Component.literal("=== Lista de Regiones ===\n").withStyle(ChatFormatting.GOLD);
                 for (int i = 0; i < regions.size(); i++) {
-                    Region r = regions.get(i);
-                    message.append(Component.literal((i + 1) + ". " + r.getName() + "\n").withStyle(ChatFormatting.GRAY));
+                    String name = regions.get(i);
+                    message.append(Component.literal((i + 1) + ". " + name + "\n").withStyle(ChatFormatting.GRAY));
                     
                     // Log de depuración por región
-                    System.out.println("[RegionVisualizer] Listando región " + (i + 1) + ": " + r.getName());
+                    System.out.println("[RegionVisualizer] Listando región " + (i + 1) + ": " + name);
                 }
                 
                 // Enviar el mensaje consolidado
@@ -258,7 +294,12 @@ public class RegionCommands {
 
             Region region = regionOpt.get();
             BlockPos center = region.getCenter();
-            player.teleportTo(center.getX() + 0.5, center.getY(), center.getZ() + 0.5);
+            ServerLevel targetLevel = source.getServer().getLevel(region.getDimension());
+            if (targetLevel == null) {
+                source.sendFailure(Component.literal("[RegionVisualizer] La dimensión '" + region.getDimension().location() + "' no está disponible.").withStyle(ChatFormatting.RED));
+                return 0;
+            }
+            player.teleportTo(targetLevel, center.getX() + 0.5, center.getY(), center.getZ() + 0.5, player.getYRot(), player.getXRot());
             source.sendSuccess(() -> Component.literal("[RegionVisualizer] Teletransportado a la región '" + name + "'.").withStyle(ChatFormatting.GREEN), true);
             return 1;
 
@@ -307,12 +348,14 @@ public class RegionCommands {
             BlockPos center = region.getCenter();
 
             source.sendSuccess(() -> Component.literal("=== Información de Región: " + name + " ===").withStyle(ChatFormatting.GOLD), false);
+            source.sendSuccess(() -> Component.literal("Dimensión: " + region.getDimension().location()).withStyle(ChatFormatting.LIGHT_PURPLE), false);
             source.sendSuccess(() -> Component.literal("Posición 1: " + pos1.getX() + ", " + pos1.getY() + ", " + pos1.getZ()).withStyle(ChatFormatting.LIGHT_PURPLE), false);
             source.sendSuccess(() -> Component.literal("Posición 2: " + pos2.getX() + ", " + pos2.getY() + ", " + pos2.getZ()).withStyle(ChatFormatting.LIGHT_PURPLE), false);
             source.sendSuccess(() -> Component.literal("Centro: " + center.getX() + ", " + center.getY() + ", " + center.getZ()).withStyle(ChatFormatting.DARK_PURPLE), false);
             source.sendSuccess(() -> Component.literal("Música: " + (region.getMusicFile() != null ? region.getMusicFile() : "Ninguna")).withStyle(ChatFormatting.AQUA), false);
             source.sendSuccess(() -> Component.literal("Bucle: " + (region.isLoopEnabled() ? "Activado" : "Desactivado")).withStyle(ChatFormatting.GREEN), false);
             source.sendSuccess(() -> Component.literal("Fade: " + (region.isFadeEnabled() ? "Activado" : "Desactivado")).withStyle(ChatFormatting.GREEN), false);
+            source.sendSuccess(() -> Component.literal("Prioridad: " + region.getPriority()).withStyle(ChatFormatting.GREEN), false);
 
             int sizeX = Math.abs(pos1.getX() - pos2.getX()) + 1;
             int sizeY = Math.abs(pos1.getY() - pos2.getY()) + 1;
@@ -340,7 +383,7 @@ public class RegionCommands {
             ServerPlayer player = source.getPlayerOrException();
             BlockPos playerPos = player.blockPosition();
 
-            Optional<Region> regionOpt = regionManager.getRegionContaining(playerPos);
+            Optional<Region> regionOpt = regionManager.getRegionContaining(player.level().dimension(), playerPos);
             
             if (regionOpt.isEmpty()) {
                 source.sendSuccess(() -> Component.literal("[RegionVisualizer] No estás en ninguna región.").withStyle(ChatFormatting.YELLOW), false);
@@ -359,6 +402,131 @@ public class RegionCommands {
             return 0;
         }
     }
+    private int executeImport(CommandContext<CommandSourceStack> ctx, boolean replace) {
+    	if (regionManager == null) {
+            ctx.getSource().sendFailure(Component.literal("Error: RegionManager no inicializado").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+        CommandSourceStack source = ctx.getSource();
+        MinecraftServer server = source.getServer();
+        String fileName = StringArgumentType.getString(ctx, "file");
+        Path file = RegionExchange.resolve(server, RegionExchange.IMPORT_FOLDER, fileName);
+        if (file == null || !Files.isRegularFile(file)) {
+            source.sendFailure(Component.literal("[RegionVisualizer] No existe '" + fileName + "' en regionvisualizer/" + RegionExchange.IMPORT_FOLDER + " del mundo.").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+        RegionExchange.Format format = RegionExchange.Format.of(file);
+        if (format == null) {
+            source.sendFailure(Component.literal("[RegionVisualizer] Formato no soportado: usa .csv, .json o .jsonl").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+        if (!exchangeRunning.compareAndSet(false, true)) {
+            source.sendFailure(Component.literal("[RegionVisualizer] Ya hay una importación o exportación en curso.").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        source.sendSuccess(() -> Component.literal("[RegionVisualizer] Importando '" + fileName + "'...").withStyle(ChatFormatting.GOLD), false);
+        // La lectura va en otro hilo; las regiones se aplican en el hilo del servidor, de una vez.
+        runExchange("RegionVisualizer-Import", () -> {
+            long start = System.nanoTime();
+            try {
+                RegionExchange.ParseResult result = RegionExchange.parse(file, format);
+                server.execute(() -> {
+                    try {
+                        applyImport(source, server, fileName, result, replace, start);
+                    } finally {
+                        exchangeRunning.set(false);
+                    }
+                });
+            } catch (Exception e) {
+                exchangeRunning.set(false);
+                System.err.println("[RegionVisualizer] Error importando " + file + ": " + e.getMessage());
+                e.printStackTrace();
+                server.execute(() -> source.sendFailure(Component.literal("[RegionVisualizer] Error importando: " + e.getMessage()).withStyle(ChatFormatting.RED)));
+            }
+        });
+        return 1;
+    }
+    private void applyImport(CommandSourceStack source, MinecraftServer server, String fileName,
+                             RegionExchange.ParseResult result, boolean replace, long start) {
+        // La dimensión solo se puede comprobar con el servidor en marcha.
+        Set<ResourceKey<Level>> dimensions = server.levelKeys();
+        List<Region> regions = new ArrayList<>(result.getRegions().size());
+        int unknownDimension = 0;
+        for (Region region : result.getRegions()) {
+            if (dimensions.contains(region.getDimension())) {
+                regions.add(region);
+            } else {
+                unknownDimension++;
+            }
+        }
+
+        RegionManager.ImportResult imported = regionManager.importRegions(regions, replace);
+        if (imported.added() + imported.replaced() > 0) {
+            regionManager.saveRegions(server.overworld());
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        int skippedDimensions = unknownDimension;
+        source.sendSuccess(() -> Component.literal("[RegionVisualizer] '" + fileName + "': " + imported.added() + " regiones nuevas, "
+            + imported.replaced() + " reemplazadas en " + millis + " ms").withStyle(ChatFormatting.GREEN), true);
+        if (result.getInvalid() > 0 || result.getDuplicates() > 0 || skippedDimensions > 0) {
+            source.sendSuccess(() -> Component.literal("Descartadas: " + result.getInvalid() + " inválidas, " + result.getDuplicates()
+                + " repetidas en el archivo, " + skippedDimensions + " de dimensiones que no existen").withStyle(ChatFormatting.YELLOW), false);
+            for (String error : result.getErrors()) {
+                source.sendSuccess(() -> Component.literal("- " + error).withStyle(ChatFormatting.GRAY), false);
+            }
+        }
+        if (!imported.conflicts().isEmpty()) {
+            List<String> conflicts = imported.conflicts();
+            String shown = String.join(", ", conflicts.subList(0, Math.min(10, conflicts.size())));
+            source.sendSuccess(() -> Component.literal(conflicts.size() + " ya existían y se dejaron igual (usa 'replace' para sobrescribirlas): "
+                + shown + (conflicts.size() > 10 ? ", ..." : "")).withStyle(ChatFormatting.YELLOW), false);
+        }
+    }
+    private int executeExport(CommandContext<CommandSourceStack> ctx) {
+    	if (regionManager == null) {
+            ctx.getSource().sendFailure(Component.literal("Error: RegionManager no inicializado").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+        CommandSourceStack source = ctx.getSource();
+        MinecraftServer server = source.getServer();
+        String fileName = StringArgumentType.getString(ctx, "file");
+        Path file = RegionExchange.resolve(server, RegionExchange.EXPORT_FOLDER, fileName);
+        RegionExchange.Format format = file != null ? RegionExchange.Format.of(file) : null;
+        if (format == null) {
+            source.sendFailure(Component.literal("[RegionVisualizer] Nombre de archivo inválido: usa un .csv, .json o .jsonl").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+        if (!exchangeRunning.compareAndSet(false, true)) {
+            source.sendFailure(Component.literal("[RegionVisualizer] Ya hay una importación o exportación en curso.").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        source.sendSuccess(() -> Component.literal("[RegionVisualizer] Exportando a '" + fileName + "'...").withStyle(ChatFormatting.GOLD), false);
+        runExchange("RegionVisualizer-Export", () -> {
+            long start = System.nanoTime();
+            try {
+                int count = RegionExchange.export(file, format, regionManager);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.println("[RegionVisualizer] Exportadas " + count + " regiones a " + file);
+                server.execute(() -> source.sendSuccess(() -> Component.literal("[RegionVisualizer] Exportadas " + count + " regiones a regionvisualizer/"
+                    + RegionExchange.EXPORT_FOLDER + "/" + fileName + " en " + millis + " ms").withStyle(ChatFormatting.GREEN), true));
+            } catch (Exception e) {
+                System.err.println("[RegionVisualizer] Error exportando " + file + ": " + e.getMessage());
+                e.printStackTrace();
+                server.execute(() -> source.sendFailure(Component.literal("[RegionVisualizer] Error exportando: " + e.getMessage()).withStyle(ChatFormatting.RED)));
+            } finally {
+                exchangeRunning.set(false);
+            }
+        });
+        return 1;
+    }
+    private static void runExchange(String threadName, Runnable task) {
+        Thread thread = new Thread(task, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
     private int executeEditMusic(CommandContext<CommandSourceStack> ctx) {
     	if (regionManager == null) {
             ctx.getSource().sendFailure(Component.literal("Error: RegionManager no inicializado").withStyle(ChatFormatting.RED));
@@ -376,8 +544,7 @@ public class RegionCommands {
                 return 0;
             }
 
-            Region region = regionOpt.get();
-            region.setMusicFile(musicFile);
+            regionManager.updateRegion(regionOpt.get().withMusicFile(musicFile));
             regionManager.saveRegions(player.serverLevel());
             source.sendSuccess(() -> Component.literal("Música de la región '" + name + "' cambiada a '" + musicFile + "'.").withStyle(ChatFormatting.GREEN), true);
             return 1;
@@ -389,6 +556,35 @@ public class RegionCommands {
         }
     }
 
+    private int executeEditPriority(CommandContext<CommandSourceStack> ctx) {
+    	if (regionManager == null) {
+            ctx.getSource().sendFailure(Component.literal("Error: RegionManager no inicializado").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+    	try {
+            String name = StringArgumentType.getString(ctx, "RegionTag");
+            int priority = IntegerArgumentType.getInteger(ctx, "priority");
+            CommandSourceStack source = ctx.getSource();
+
+            Optional<Region> regionOpt = regionManager.getRegionByName(name);
+            if (regionOpt.isEmpty()) {
+                source.sendFailure(Component.literal("No se encontró la región '" + name + "'.").withStyle(ChatFormatting.RED));
+                return 0;
+            }
+
+            // Entre regiones solapadas gana la de mayor prioridad; a igualdad, la más pequeña.
+            regionManager.updateRegion(regionOpt.get().withPriority(priority));
+            regionManager.saveRegions(source.getServer().overworld());
+            source.sendSuccess(() -> Component.literal("Prioridad de la región '" + name + "' cambiada a " + priority + ".").withStyle(ChatFormatting.GREEN), true);
+            return 1;
+        } catch (Exception e) {
+            ctx.getSource().sendFailure(Component.literal("Error cambiando prioridad: " + e.getMessage()).withStyle(ChatFormatting.RED));
+            System.err.println("[RegionVisualizer] Error cambiando prioridad: " + e.getMessage());
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
     private int executeEditName(CommandContext<CommandSourceStack> ctx) {
     	if (regionManager == null) {
             ctx.getSource().sendFailure(Component.literal("Error: RegionManager no inicializado").withStyle(ChatFormatting.RED));
@@ -411,10 +607,10 @@ public class RegionCommands {
                 return 0;
             }
 
-            Region region = regionOpt.get();
-            regionManager.removeRegion(name);
-            region.setName(newName);
-            regionManager.addRegion(region);
+            if (!regionManager.renameRegion(name, newName)) {
+                source.sendFailure(Component.literal("No se pudo cambiar el nombre de la región '" + name + "'.").withStyle(ChatFormatting.RED));
+                return 0;
+            }
             regionManager.saveRegions(player.serverLevel());
             source.sendSuccess(() -> Component.literal("Nombre de la región cambiado de '" + name + "' a '" + newName + "'.").withStyle(ChatFormatting.GREEN), true);
             return 1;
@@ -0,0 +1,173 @@
+package com.riburitu.regionvisualizer.config;
+
+import com.riburitu.regionvisualizer.util.RegionIndexType;
+import net.minecraftforge.fml.loading.FMLPaths;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Configuración del lado servidor, en config/regionvisualizer-server.properties.
+ * Se lee al arrancar el servidor; si falta el archivo se crea con los valores por defecto.
+ */
+public class ServerConfig {
+    private static final String FILE_NAME = "regionvisualizer-server.properties";
+
+    private static RegionIndexType regionIndex = RegionIndexType.GRID;
+    private static int regionCheckWindowTicks = 5;
+    private static long regionCheckBudgetMicros = 500;
+    private static long saveQuietMillis = 2000;
+    private static long saveMaxDelayMillis = 10000;
+    private static int regionEntryMargin = 1;
+    private static int regionExitMargin = 2;
+    private static long regionMinDwellMillis = 500;
+    private static long musicDownloadBytesPerSecond = 256 * 1024;
+    private static int musicMaxConcurrentTransfers = 4;
+
+    public static RegionIndexType getRegionIndex() {
+        return regionIndex;
+    }
+
+    public static int getRegionCheckWindowTicks() {
+        return regionCheckWindowTicks;
+    }
+
+    public static long getRegionCheckBudgetMicros() {
+        return regionCheckBudgetMicros;
+    }
+
+    public static long getSaveQuietMillis() {
+        return saveQuietMillis;
+    }
+
+    public static long getSaveMaxDelayMillis() {
+        return saveMaxDelayMillis;
+    }
+
+    public static int getRegionEntryMargin() {
+        return regionEntryMargin;
+    }
+
+    public static int getRegionExitMargin() {
+        return regionExitMargin;
+    }
+
+    public static long getRegionMinDwellMillis() {
+        return regionMinDwellMillis;
+    }
+
+    public static long getMusicDownloadBytesPerSecond() {
+        return musicDownloadBytesPerSecond;
+    }
+
+    public static int getMusicMaxConcurrentTransfers() {
+        return musicMaxConcurrentTransfers;
+    }
+
+    private static Path getConfigFile() {
+        return FMLPaths.CONFIGDIR.get().resolve(FILE_NAME);
+    }
+
+    public static void load() {
+        Path configFile = getConfigFile();
+        try {
+            if (!Files.exists(configFile)) {
+                resetToDefaults();
+                save();
+                return;
+            }
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(configFile)) {
+                props.load(in);
+            }
+            regionIndex = RegionIndexType.fromConfig(props.getProperty("regionIndex", RegionIndexType.GRID.getConfigName()));
+
+            regionCheckWindowTicks = Integer.parseInt(props.getProperty("regionCheckWindowTicks", "5").trim());
+            regionCheckWindowTicks = Math.max(1, Math.min(100, regionCheckWindowTicks));
+
+            regionCheckBudgetMicros = Long.parseLong(props.getProperty("regionCheckBudgetMicros", "500").trim());
+            regionCheckBudgetMicros = Math.max(50L, Math.min(50_000L, regionCheckBudgetMicros));
+
+            saveQuietMillis = Long.parseLong(props.getProperty("saveQuietMillis", "2000").trim());
+            saveQuietMillis = Math.max(0L, Math.min(60_000L, saveQuietMillis));
+
+            saveMaxDelayMillis = Long.parseLong(props.getProperty("saveMaxDelayMillis", "10000").trim());
+            saveMaxDelayMillis = Math.max(saveQuietMillis, Math.min(300_000L, saveMaxDelayMillis));
+
+            regionEntryMargin = Integer.parseInt(props.getProperty("regionEntryMargin", "1").trim());
+            regionEntryMargin = Math.max(0, Math.min(16, regionEntryMargin));
+
+            regionExitMargin = Integer.parseInt(props.getProperty("regionExitMargin", "2").trim());
+            regionExitMargin = Math.max(0, Math.min(16, regionExitMargin));
+
+            regionMinDwellMillis = Long.parseLong(props.getProperty("regionMinDwellMillis", "500").trim());
+            regionMinDwellMillis = Math.max(0L, Math.min(10_000L, regionMinDwellMillis));
+
+            musicDownloadBytesPerSecond = Long.parseLong(props.getProperty("musicDownloadBytesPerSecond", "262144").trim());
+            musicDownloadBytesPerSecond = Math.max(16_384L, Math.min(16_777_216L, musicDownloadBytesPerSecond));
+
+            musicMaxConcurrentTransfers = Integer.parseInt(props.getProperty("musicMaxConcurrentTransfers", "4").trim());
+            musicMaxConcurrentTransfers = Math.max(0, Math.min(64, musicMaxConcurrentTransfers));
+
+            System.out.println("[RegionVisualizer] Configuración del servidor cargada");
+            System.out.println("[RegionVisualizer]   - Índice de regiones: " + regionIndex.getConfigName());
+            System.out.println("[RegionVisualizer]   - Ventana de revisión: " + regionCheckWindowTicks + " ticks, presupuesto: " + regionCheckBudgetMicros + " µs/tick");
+            System.out.println("[RegionVisualizer]   - Guardado tras " + saveQuietMillis + " ms sin cambios (máximo " + saveMaxDelayMillis + " ms)");
+            System.out.println("[RegionVisualizer]   - Bordes: entrada " + regionEntryMargin + ", salida " + regionExitMargin + " bloques, permanencia mínima " + regionMinDwellMillis + " ms");
+            System.out.println("[RegionVisualizer]   - Descargas de música: " + musicMaxConcurrentTransfers + " a la vez, " + musicDownloadBytesPerSecond / 1024 + " KiB/s por jugador");
+        } catch (Exception e) {
+            System.err.println("[RegionVisualizer] Error cargando configuración del servidor: " + e.getMessage());
+            resetToDefaults();
+        }
+    }
+
+    public static void save() {
+        Path configFile = getConfigFile();
+        try {
+            Properties props = new Properties();
+            props.setProperty("regionIndex", regionIndex.getConfigName());
+            props.setProperty("regionCheckWindowTicks", String.valueOf(regionCheckWindowTicks));
+            props.setProperty("regionCheckBudgetMicros", String.valueOf(regionCheckBudgetMicros));
+            props.setProperty("saveQuietMillis", String.valueOf(saveQuietMillis));
+            props.setProperty("saveMaxDelayMillis", String.valueOf(saveMaxDelayMillis));
+            props.setProperty("regionEntryMargin", String.valueOf(regionEntryMargin));
+            props.setProperty("regionExitMargin", String.valueOf(regionExitMargin));
+            props.setProperty("regionMinDwellMillis", String.valueOf(regionMinDwellMillis));
+            props.setProperty("musicDownloadBytesPerSecond", String.valueOf(musicDownloadBytesPerSecond));
+            props.setProperty("musicMaxConcurrentTransfers", String.valueOf(musicMaxConcurrentTransfers));
+
+            Files.createDirectories(configFile.getParent());
+            try (OutputStream out = Files.newOutputStream(configFile)) {
+                props.store(out, "RegionVisualizer Server Configuration\n"
+                    + "regionIndex: spatial index for region lookups (grid | bvh)\n"
+                    + "regionCheckWindowTicks: every player is checked once per this many ticks (1-100)\n"
+                    + "regionCheckBudgetMicros: time budget per tick for region checks, leftovers carry over (50-50000)\n"
+                    + "saveQuietMillis: region edits are written after this long without further changes (0-60000)\n"
+                    + "saveMaxDelayMillis: upper bound on how long a pending save can be postponed (saveQuietMillis-300000)\n"
+                    + "regionEntryMargin: blocks a player must be inside a region before entering it (0-16)\n"
+                    + "regionExitMargin: blocks a player must be outside a region before leaving it; keep it >= regionEntryMargin for direct hand-offs between touching regions (0-16)\n"
+                    + "regionMinDwellMillis: a new region must hold this long before the transition is committed (0-10000)\n"
+                    + "musicDownloadBytesPerSecond: bandwidth cap per player when sending music files to clients (16384-16777216)\n"
+                    + "musicMaxConcurrentTransfers: how many players can download music files at the same time, 0 disables downloads (0-64)");
+            }
+        } catch (Exception e) {
+            System.err.println("[RegionVisualizer] Error guardando configuración del servidor: " + e.getMessage());
+        }
+    }
+
+    private static void resetToDefaults() {
+        regionIndex = RegionIndexType.GRID;
+        regionCheckWindowTicks = 5;
+        regionCheckBudgetMicros = 500;
+        saveQuietMillis = 2000;
+        saveMaxDelayMillis = 10000;
+        regionEntryMargin = 1;
+        regionExitMargin = 2;
+        regionMinDwellMillis = 500;
+        musicDownloadBytesPerSecond = 256 * 1024;
+        musicMaxConcurrentTransfers = 4;
+    }
+}
@@ -0,0 +1,19 @@
+package com.riburitu.regionvisualizer.event;
+
+import com.riburitu.regionvisualizer.util.Region;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.eventbus.api.Cancelable;
+
+/**
+ * El jugador entra en {@link #getNewRegion()}, viniendo de {@link #getOldRegion()} o de ninguna.
+ *
+ * Si se cancela, el jugador no cuenta como dentro de la región nueva (la anterior ya se dejó
+ * atrás con su {@link RegionExitEvent}) y el evento se vuelve a publicar en la siguiente
+ * revisión mientras siga dentro.
+ */
+@Cancelable
+public class RegionEnterEvent extends RegionEvent {
+    public RegionEnterEvent(ServerPlayer player, Region oldRegion, Region newRegion) {
+        super(player, oldRegion, newRegion);
+    }
+}
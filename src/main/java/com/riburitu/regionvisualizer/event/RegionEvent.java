@@ -0,0 +1,40 @@
+package com.riburitu.regionvisualizer.event;
+
+import com.riburitu.regionvisualizer.util.Region;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+
+/**
+ * Base de los eventos de transición entre regiones. Los publica {@code RegionTracker} en
+ * {@code MinecraftForge.EVENT_BUS} una sola vez por transición, en el hilo del servidor.
+ *
+ * Cualquiera de las dos regiones puede ser null: null significa "fuera de toda región".
+ */
+public abstract class RegionEvent extends PlayerEvent {
+    private final Region oldRegion;
+    private final Region newRegion;
+
+    protected RegionEvent(ServerPlayer player, Region oldRegion, Region newRegion) {
+        super(player);
+        this.oldRegion = oldRegion;
+        this.newRegion = newRegion;
+    }
+
+    public ServerPlayer getServerPlayer() {
+        return (ServerPlayer) getEntity();
+    }
+
+    /**
+     * Región en la que estaba el jugador antes de la transición.
+     */
+    public Region getOldRegion() {
+        return oldRegion;
+    }
+
+    /**
+     * Región en la que queda el jugador si la transición no se cancela.
+     */
+    public Region getNewRegion() {
+        return newRegion;
+    }
+}
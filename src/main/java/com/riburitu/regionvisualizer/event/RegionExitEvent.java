@@ -0,0 +1,39 @@
+package com.riburitu.regionvisualizer.event;
+
+import com.riburitu.regionvisualizer.util.Region;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.eventbus.api.Cancelable;
+
+/**
+ * El jugador sale de {@link #getOldRegion()}, hacia {@link #getNewRegion()} o hacia ninguna.
+ * Se publica antes que el {@link RegionEnterEvent} de la misma transición.
+ *
+ * Si se cancela, la transición entera se descarta: el jugador sigue contando como dentro de
+ * la región anterior y el evento se vuelve a publicar en la siguiente revisión mientras
+ * siga fuera de ella.
+ *
+ * Al desconectarse o cambiar de dimensión la salida es forzada ({@link #isForced()}) y no se
+ * puede cancelar.
+ */
+@Cancelable
+public class RegionExitEvent extends RegionEvent {
+    private final boolean forced;
+
+    public RegionExitEvent(ServerPlayer player, Region oldRegion, Region newRegion) {
+        this(player, oldRegion, newRegion, false);
+    }
+
+    public RegionExitEvent(ServerPlayer player, Region oldRegion, Region newRegion, boolean forced) {
+        super(player, oldRegion, newRegion);
+        this.forced = forced;
+    }
+
+    public boolean isForced() {
+        return forced;
+    }
+
+    @Override
+    public boolean isCancelable() {
+        return !forced;
+    }
+}
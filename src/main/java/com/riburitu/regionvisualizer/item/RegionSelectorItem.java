@@ -23,6 +23,7 @@ import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.network.PacketDistributor;
 
+import java.io.UncheckedIOException;
 import java.util.List;
 
 public class RegionSelectorItem extends Item {
@@ -89,9 +90,19 @@ public class RegionSelectorItem extends Item {
                     }
                 }
                 if (selection.isComplete()) {
-                    editingRegion.setPos1(selection.pos1);
-                    editingRegion.setPos2(selection.pos2);
-                    RegionVisualizer.INSTANCE.getRegionManager().updateRegion(editingRegion);
+                    // Se parte de la versión guardada para no perder cambios hechos mientras se editaba (música, prioridad).
+                    // Las posiciones nuevas se marcaron en la dimensión del jugador.
+                    try {
+                        Region stored = RegionVisualizer.INSTANCE.getRegionManager().getRegionByName(editingRegion.getName()).orElse(editingRegion);
+                        editingRegion = stored.withBounds(level.dimension(), selection.pos1, selection.pos2);
+                        RegionVisualizer.INSTANCE.getRegionManager().updateRegion(editingRegion);
+                    } catch (UncheckedIOException e) {
+                        // El fragmento de la región no se pudo leer: se conserva la selección para reintentar.
+                        NetworkHandler.sendOverlayMessage((ServerPlayer) player,
+                            Component.literal("No se pudo editar la región: " + e.getMessage()).withStyle(ChatFormatting.RED));
+                        System.err.println("[RegionVisualizer] " + e.getMessage());
+                        return InteractionResult.FAIL;
+                    }
                     RegionVisualizer.INSTANCE.getRegionManager().saveRegions(player.getServer().overworld());
                     message = Component.literal("Posiciones de la región '" + editingRegion.getName() + "' actualizadas.")
                         .withStyle(ChatFormatting.GREEN);
@@ -0,0 +1,243 @@
+package com.riburitu.regionvisualizer.network;
+
+import com.riburitu.regionvisualizer.util.MusicTrack;
+import com.riburitu.regionvisualizer.util.MusicTrackRegistry;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.PacketDistributor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Envía a los clientes los archivos de la carpeta music/ del servidor que les faltan. El
+ * cliente compara su carpeta con el SHA-256 del diccionario y pide solo lo que no tiene,
+ * desde donde quedó una descarga anterior.
+ *
+ * Cada jugador recibe un archivo a la vez, en trozos de {@link #CHUNK_SIZE} limitados por
+ * bytes por segundo y por una ventana de bytes sin confirmar: si el cliente no acusa recibo,
+ * el servidor deja de enviar en lugar de llenar la conexión. Solo se usa en el hilo del servidor.
+ */
+public class MusicTransferService {
+    static final int CHUNK_SIZE = 16 * 1024;
+    // Bytes enviados y todavía sin confirmar que se permiten por jugador.
+    private static final int WINDOW_BYTES = 4 * CHUNK_SIZE;
+    private static final long ACK_TIMEOUT_MILLIS = 30_000;
+    private static final int MAX_QUEUED = 1024;
+
+    private final MusicTrackRegistry musicTracks;
+    private final Map<UUID, PlayerTransfers> players = new LinkedHashMap<>();
+    private long bytesPerSecond = 256 * 1024;
+    private int maxConcurrent = 4;
+
+    private record Request(int trackId, long offset) {
+    }
+
+    private static final class PlayerTransfers {
+        private final ServerPlayer player;
+        private final ArrayDeque<Request> queue = new ArrayDeque<>();
+        private Transfer active;
+
+        private PlayerTransfers(ServerPlayer player) {
+            this.player = player;
+        }
+    }
+
+    private static final class Transfer {
+        private final int trackId;
+        private final String fileName;
+        private final FileChannel channel;
+        private final long size;
+        private long sent;
+        private long acked;
+        private boolean lastSent;
+        private long lastAckTime;
+        private double allowance;
+
+        private Transfer(int trackId, String fileName, FileChannel channel, long size, long offset) {
+            this.trackId = trackId;
+            this.fileName = fileName;
+            this.channel = channel;
+            this.size = size;
+            this.sent = offset;
+            this.acked = offset;
+            this.lastAckTime = System.currentTimeMillis();
+        }
+    }
+
+    public MusicTransferService(MusicTrackRegistry musicTracks) {
+        this.musicTracks = musicTracks;
+    }
+
+    /**
+     * {@code bytesPerSecond} es el límite de cada jugador; {@code maxConcurrent} cuántos
+     * jugadores descargan a la vez (0 desactiva las descargas).
+     */
+    public void configure(long bytesPerSecond, int maxConcurrent) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public void request(ServerPlayer player, int trackId, long offset) {
+        if (maxConcurrent <= 0) return;
+        MusicTrack track = musicTracks.get(trackId);
+        if (track == null || musicTracks.getFile(track) == null) {
+            System.out.println("[RegionVisualizer] " + player.getName().getString() + " pidió una pista que el servidor no tiene: " + trackId);
+            return;
+        }
+        PlayerTransfers transfers = players.get(player.getUUID());
+        if (transfers == null || transfers.player != player) {
+            remove(player);
+            transfers = new PlayerTransfers(player);
+            players.put(player.getUUID(), transfers);
+        }
+        Request request = new Request(trackId, Math.max(0, offset));
+
+        // El cliente vuelve a pedir la pista en curso cuando le falta un trozo: se reanuda desde ahí.
+        if (transfers.active != null && transfers.active.trackId == trackId) {
+            close(transfers.active);
+            transfers.active = start(transfers.player, request);
+            return;
+        }
+        transfers.queue.removeIf(queued -> queued.trackId() == trackId);
+        if (transfers.queue.size() < MAX_QUEUED) {
+            transfers.queue.add(request);
+        }
+    }
+
+    public void acknowledge(ServerPlayer player, int trackId, long received) {
+        PlayerTransfers transfers = players.get(player.getUUID());
+        if (transfers == null || transfers.active == null || transfers.active.trackId != trackId) return;
+        Transfer transfer = transfers.active;
+        transfer.acked = Math.max(transfer.acked, Math.min(received, transfer.sent));
+        transfer.lastAckTime = System.currentTimeMillis();
+    }
+
+    public void tick() {
+        if (players.isEmpty()) return;
+        int running = 0;
+        for (PlayerTransfers transfers : players.values()) {
+            if (transfers.active != null) running++;
+        }
+
+        Iterator<PlayerTransfers> it = players.values().iterator();
+        while (it.hasNext()) {
+            PlayerTransfers transfers = it.next();
+            if (transfers.player.hasDisconnected()) {
+                if (transfers.active != null) close(transfers.active);
+                it.remove();
+                continue;
+            }
+            while (transfers.active == null && running < maxConcurrent && !transfers.queue.isEmpty()) {
+                transfers.active = start(transfers.player, transfers.queue.poll());
+                if (transfers.active != null) running++;
+            }
+            if (transfers.active == null) {
+                if (transfers.queue.isEmpty()) it.remove();
+                continue;
+            }
+            if (!pump(transfers.player, transfers.active)) {
+                close(transfers.active);
+                transfers.active = null;
+                running--;
+            }
+        }
+    }
+
+    /**
+     * Descarta las transferencias del jugador; al volver a entrar el cliente las reanuda
+     * desde lo que ya tenga en disco.
+     */
+    public void remove(ServerPlayer player) {
+        PlayerTransfers transfers = players.remove(player.getUUID());
+        if (transfers != null && transfers.active != null) close(transfers.active);
+    }
+
+    public void clear() {
+        for (PlayerTransfers transfers : players.values()) {
+            if (transfers.active != null) close(transfers.active);
+        }
+        players.clear();
+    }
+
+    private Transfer start(ServerPlayer player, Request request) {
+        MusicTrack track = musicTracks.get(request.trackId());
+        Path file = musicTracks.getFile(track);
+        if (file == null) return null;
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            long size = channel.size();
+            // Un resto más largo que el archivo no es de esta versión: se empieza de cero.
+            long offset = request.offset() <= size ? request.offset() : 0;
+            if (offset == 0) {
+                System.out.println("[RegionVisualizer] 📦 Enviando " + track.fileName() + " a " + player.getName().getString() + " (" + size + " bytes)");
+            } else {
+                System.out.println("[RegionVisualizer] 📦 Reanudando " + track.fileName() + " para " + player.getName().getString() + " desde " + offset + "/" + size);
+            }
+            return new Transfer(track.id(), track.fileName(), channel, size, offset);
+        } catch (IOException e) {
+            System.err.println("[RegionVisualizer] Error abriendo " + file + " para enviar: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Envía lo que permiten el límite de bytes y la ventana. Devuelve false cuando la
+     * transferencia terminó o se abandonó.
+     */
+    private boolean pump(ServerPlayer player, Transfer transfer) {
+        double perTick = bytesPerSecond / 20.0;
+        transfer.allowance = Math.min(transfer.allowance + perTick, perTick + CHUNK_SIZE);
+        try {
+            while (!transfer.lastSent && transfer.sent - transfer.acked < WINDOW_BYTES) {
+                int length = (int) Math.min(CHUNK_SIZE, transfer.size - transfer.sent);
+                if (length > 0 && transfer.allowance < length) break;
+                byte[] data = read(transfer.channel, transfer.sent, length);
+                boolean last = transfer.sent + length >= transfer.size;
+                NetworkHandler.CHANNEL.send(PacketDistributor.PLAYER.with(() -> player),
+                    new PacketMusicChunk(transfer.trackId, transfer.sent, transfer.size, last, data));
+                transfer.sent += length;
+                transfer.allowance -= length;
+                transfer.lastSent = last;
+            }
+        } catch (IOException e) {
+            System.err.println("[RegionVisualizer] Error leyendo " + transfer.fileName + ": " + e.getMessage());
+            return false;
+        }
+
+        if (transfer.lastSent && transfer.acked >= transfer.size) {
+            System.out.println("[RegionVisualizer] ✅ " + transfer.fileName + " enviado a " + player.getName().getString());
+            return false;
+        }
+        if (System.currentTimeMillis() - transfer.lastAckTime > ACK_TIMEOUT_MILLIS) {
+            System.out.println("[RegionVisualizer] ⚠️ Sin respuesta de " + player.getName().getString() + ", se abandona el envío de " + transfer.fileName);
+            return false;
+        }
+        return true;
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("El archivo se acortó durante el envío");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static void close(Transfer transfer) {
+        try {
+            transfer.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -3,32 +3,40 @@ package com.riburitu.regionvisualizer.network;
 import com.riburitu.regionvisualizer.RegionVisualizer;
 import com.riburitu.regionvisualizer.client.RegionRenderer;
 import com.riburitu.regionvisualizer.item.RegionSelectorItem;
+import com.riburitu.regionvisualizer.util.MusicTrack;
 import com.riburitu.regionvisualizer.util.Region;
 
+import net.minecraft.core.registries.Registries;
 import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.ChatFormatting;
+import net.minecraft.world.level.Level;
 
-import net.minecraftforge.network.NetworkDirection;
 import net.minecraftforge.network.NetworkEvent;
 import net.minecraftforge.network.NetworkRegistry;
 import net.minecraftforge.network.PacketDistributor;
 import net.minecraftforge.network.simple.SimpleChannel;
+import net.minecraftforge.server.ServerLifecycleHooks;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
 
 public class NetworkHandler {
-    private static final String PROTOCOL_VERSION = "1";
+    private static final String PROTOCOL_VERSION = "12";
     public static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(
             new ResourceLocation(RegionVisualizer.MODID, "main"),
             () -> PROTOCOL_VERSION,
             PROTOCOL_VERSION::equals,
             PROTOCOL_VERSION::equals
     );
+    // Música y mensajes de la HUD pendientes de cada jugador en el tick actual.
+    private static final OutboundCoalescer OUTBOUND = new OutboundCoalescer();
 
     public static void register() {
         int id = 0;
@@ -66,10 +74,85 @@ public class NetworkHandler {
                 PacketSyncSelection::encode,
                 PacketSyncSelection::decode,
                 PacketSyncSelection::handle);
+        CHANNEL.registerMessage(id++, PacketTrackDictionary.class,
+                PacketTrackDictionary::encode,
+                PacketTrackDictionary::decode,
+                PacketTrackDictionary::handle);
+        CHANNEL.registerMessage(id++, PacketRegionMirror.class,
+                PacketRegionMirror::encode,
+                PacketRegionMirror::decode,
+                PacketRegionMirror::handle);
+        CHANNEL.registerMessage(id++, PacketRegionDelta.class,
+                PacketRegionDelta::encode,
+                PacketRegionDelta::decode,
+                PacketRegionDelta::handle);
+        // El cliente pide el conjunto completo al detectar un hueco en las revisiones
+        CHANNEL.registerMessage(id++, PacketRegionResync.class,
+                PacketRegionResync::encode,
+                PacketRegionResync::decode,
+                PacketRegionResync::handle);
+        CHANNEL.registerMessage(id++, PacketMessageBundle.class,
+                PacketMessageBundle::encode,
+                PacketMessageBundle::decode,
+                PacketMessageBundle::handle);
+        // Descarga de los archivos de música del servidor
+        CHANNEL.registerMessage(id++, PacketMusicRequest.class,
+                PacketMusicRequest::encode,
+                PacketMusicRequest::decode,
+                PacketMusicRequest::handle);
+        CHANNEL.registerMessage(id++, PacketMusicChunk.class,
+                PacketMusicChunk::encode,
+                PacketMusicChunk::decode,
+                PacketMusicChunk::handle);
+        CHANNEL.registerMessage(id++, PacketMusicAck.class,
+                PacketMusicAck::encode,
+                PacketMusicAck::decode,
+                PacketMusicAck::handle);
     }
 
-    public static void sendPlayMusic(ServerPlayer player, String filename) {
-        CHANNEL.sendTo(new PlayMusicPacket(filename), player.connection.connection, NetworkDirection.PLAY_TO_CLIENT);
+    /**
+     * Las órdenes de música no salen en el acto: se juntan por jugador y se envían al final
+     * del tick con {@link #flushOutbound()}.
+     */
+    public static void sendMusic(ServerPlayer player, PlayMusicPacket packet) {
+        if (!player.server.isSameThread()) {
+            player.server.execute(() -> OUTBOUND.addMusic(player, packet));
+            return;
+        }
+        OUTBOUND.addMusic(player, packet);
+    }
+
+    public static void flushOutbound() {
+        OUTBOUND.flush();
+    }
+
+    public static void discardOutbound(ServerPlayer player) {
+        OUTBOUND.remove(player);
+    }
+
+    public static void clearOutbound() {
+        OUTBOUND.clear();
+    }
+
+    /**
+     * Diccionario de pistas completo; se envía una vez al entrar al servidor.
+     */
+    public static void sendTrackDictionary(ServerPlayer player, List<MusicTrack> tracks) {
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), new PacketTrackDictionary(true, tracks));
+    }
+
+    /**
+     * Pista registrada durante la sesión, o ya registrada cuyo hash y duración terminaron de
+     * calcularse: va a todos los jugadores antes de cualquier paquete que la use.
+     */
+    public static void sendTrackAdded(MusicTrack track) {
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        if (server == null) return;
+        if (!server.isSameThread()) {
+            server.execute(() -> sendTrackAdded(track));
+            return;
+        }
+        CHANNEL.send(PacketDistributor.ALL.noArg(), new PacketTrackDictionary(false, List.of(track)));
     }
 
     public static void sendViewRegion(ServerPlayer player, Region region) {
@@ -88,7 +171,11 @@ public class NetworkHandler {
     }
 
     public static void sendOverlayMessage(ServerPlayer player, Component message) {
-        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), new PacketOverlayMessage(message));
+        if (!player.server.isSameThread()) {
+            player.server.execute(() -> OUTBOUND.addOverlay(player, message));
+            return;
+        }
+        OUTBOUND.addOverlay(player, message);
     }
 
     public static void sendRegionRequest(BlockPos pos) {
@@ -96,35 +183,64 @@ public class NetworkHandler {
     }
 }
 
+/**
+ * Región tal como se envía para verla o editarla: la música va como id del diccionario de
+ * pistas y las banderas en un byte. La pista se resuelve al manejar el paquete, en el hilo
+ * del cliente, después de que el diccionario ya se aplicó.
+ */
+record RegionPayload(String name, ResourceKey<Level> dimension, BlockPos pos1, BlockPos pos2, int trackId, int flags, int priority) {
+    private static final int FLAG_LOOP = 1;
+    private static final int FLAG_FADE = 2;
+
+    static RegionPayload of(Region region) {
+        int trackId = RegionVisualizer.INSTANCE.getMusicTracks().idOf(region.getMusicFile());
+        int flags = (region.isLoopEnabled() ? FLAG_LOOP : 0) | (region.isFadeEnabled() ? FLAG_FADE : 0);
+        return new RegionPayload(region.getName(), region.getDimension(), region.getPos1(), region.getPos2(), trackId, flags, region.getPriority());
+    }
+
+    void write(FriendlyByteBuf buf) {
+        buf.writeUtf(name);
+        buf.writeResourceKey(dimension);
+        buf.writeBlockPos(pos1);
+        buf.writeBlockPos(pos2);
+        buf.writeVarInt(trackId);
+        buf.writeByte(flags);
+        buf.writeVarInt(priority);
+    }
+
+    static RegionPayload read(FriendlyByteBuf buf) {
+        return new RegionPayload(buf.readUtf(), buf.readResourceKey(Registries.DIMENSION), buf.readBlockPos(), buf.readBlockPos(),
+            buf.readVarInt(), buf.readUnsignedByte(), buf.readVarInt());
+    }
+
+    Region toClientRegion() {
+        String musicFile = com.riburitu.regionvisualizer.client.sound.ClientMusicTracks.getFileName(trackId);
+        return new Region(name, dimension, pos1, pos2, musicFile, (flags & FLAG_LOOP) != 0, (flags & FLAG_FADE) != 0, priority);
+    }
+}
+
 class PacketViewRegion {
-    private final Region region;
+    private final RegionPayload region;
 
     public PacketViewRegion(Region region) {
+        this(RegionPayload.of(region));
+    }
+
+    private PacketViewRegion(RegionPayload region) {
         this.region = region;
     }
 
     public static void encode(PacketViewRegion msg, FriendlyByteBuf buf) {
-        buf.writeUtf(msg.region.getName());
-        buf.writeBlockPos(msg.region.getPos1());
-        buf.writeBlockPos(msg.region.getPos2());
-        buf.writeUtf(msg.region.getMusicFile() != null ? msg.region.getMusicFile() : "");
-        buf.writeBoolean(msg.region.isLoopEnabled());
-        buf.writeBoolean(msg.region.isFadeEnabled());
+        msg.region.write(buf);
     }
 
     public static PacketViewRegion decode(FriendlyByteBuf buf) {
-        String name = buf.readUtf();
-        BlockPos pos1 = buf.readBlockPos();
-        BlockPos pos2 = buf.readBlockPos();
-        String musicFile = buf.readUtf();
-        boolean loop = buf.readBoolean();
-        boolean fade = buf.readBoolean();
-        return new PacketViewRegion(new Region(name, pos1, pos2, musicFile.isEmpty() ? null : musicFile, loop, fade));
+        return new PacketViewRegion(RegionPayload.read(buf));
     }
 
     public static void handle(PacketViewRegion msg, Supplier<NetworkEvent.Context> ctx) {
         ctx.get().enqueueWork(() -> {
-            RegionRenderer.setViewedRegion(msg.region);
+            RegionRenderer.setViewedRegion(msg.region.toClientRegion());
         });
         ctx.get().setPacketHandled(true);
     }
@@ -148,35 +264,29 @@ class PacketClearVisualization {
 }
 
 class PacketEditPos {
-    private final Region region;
+    private final RegionPayload region;
 
     public PacketEditPos(Region region) {
+        this(RegionPayload.of(region));
+    }
+
+    private PacketEditPos(RegionPayload region) {
         this.region = region;
     }
 
     public static void encode(PacketEditPos msg, FriendlyByteBuf buf) {
-        buf.writeUtf(msg.region.getName());
-        buf.writeBlockPos(msg.region.getPos1());
-        buf.writeBlockPos(msg.region.getPos2());
-        buf.writeUtf(msg.region.getMusicFile() != null ? msg.region.getMusicFile() : "");
-        buf.writeBoolean(msg.region.isLoopEnabled());
-        buf.writeBoolean(msg.region.isFadeEnabled());
+        msg.region.write(buf);
     }
 
     public static PacketEditPos decode(FriendlyByteBuf buf) {
-        String name = buf.readUtf();
-        BlockPos pos1 = buf.readBlockPos();
-        BlockPos pos2 = buf.readBlockPos();
-        String musicFile = buf.readUtf();
-        boolean loop = buf.readBoolean();
-        boolean fade = buf.readBoolean();
-        return new PacketEditPos(new Region(name, pos1, pos2, musicFile.isEmpty() ? null : musicFile, loop, fade));
+        return new PacketEditPos(RegionPayload.read(buf));
     }
 
     public static void handle(PacketEditPos msg, Supplier<NetworkEvent.Context> ctx) {
         ctx.get().enqueueWork(() -> {
-            RegionSelectorItem.setEditingRegion(msg.region);
-            RegionRenderer.setViewedRegion(msg.region);
+            Region region = msg.region.toClientRegion();
+            RegionSelectorItem.setEditingRegion(region);
+            RegionRenderer.setViewedRegion(region);
         });
         ctx.get().setPacketHandled(true);
     }
@@ -228,18 +338,17 @@ class RegionRequestPacket {
             if (player != null) {
                 System.err.println("[RegionVisualizer] ⚠️ Jugador nulo al manejar RegionRequestPacket");
                 // Determinar la región en el servidor
-                String regionName = RegionVisualizer.INSTANCE.getCurrentRegion(player.level(), msg.pos);
-                if (regionName != null) {
-                    Optional<Region> regionOpt = RegionVisualizer.INSTANCE.getRegionManager().getRegionByName(regionName);
-                    if (regionOpt.isPresent()) {
-                        Region region = regionOpt.get();
-                        String musicCommand = "MUSIC:" + region.getMusicFile() + ":" + region.isLoopEnabled() + ":" + region.isFadeEnabled();
-                        NetworkHandler.sendPlayMusic(player, musicCommand);
-                        NetworkHandler.sendOverlayMessage(player, Component.literal("Reproduciendo --> " + region.getMusicFile()).withStyle(ChatFormatting.GREEN));
-                        System.out.println("[RegionVisualizer] " + player.getName().getString() + " ha entrado en " + regionName);
+                Optional<Region> regionOpt = RegionVisualizer.INSTANCE.getRegionManager().getRegionContaining(player.level().dimension(), msg.pos);
+                if (regionOpt.isPresent()) {
+                    Region region = regionOpt.get();
+                    int trackId = RegionVisualizer.INSTANCE.getMusicTracks().idOf(region.getMusicFile());
+                    if (trackId != PlayMusicPacket.NO_TRACK_ID) {
+                        NetworkHandler.sendMusic(player, PlayMusicPacket.play(trackId, region.isLoopEnabled(), region.isFadeEnabled()));
                     }
+                    NetworkHandler.sendOverlayMessage(player, Component.literal("Reproduciendo --> " + region.getMusicFile()).withStyle(ChatFormatting.GREEN));
+                    System.out.println("[RegionVisualizer] " + player.getName().getString() + " ha entrado en " + region.getName());
                 } else {
-                    NetworkHandler.sendPlayMusic(player, "STOP:false");
+                    NetworkHandler.sendMusic(player, PlayMusicPacket.stop(false));
                     NetworkHandler.sendOverlayMessage(player, Component.literal("Música detenida").withStyle(ChatFormatting.YELLOW));
                     System.out.println("[RegionVisualizer] " + player.getName().getString() + " no está en ninguna región.");
                 }
@@ -0,0 +1,90 @@
+package com.riburitu.regionvisualizer.network;
+
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.PacketDistributor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Junta por jugador las órdenes de música y los mensajes de la HUD de un tick y los envía
+ * una sola vez al final del tick. Lo que queda reemplazado dentro del tick no se envía:
+ * entrar y salir varias veces de una región termina en la última orden, y de los mensajes
+ * de la HUD solo se ve el último. Solo se usa en el hilo del servidor.
+ */
+public class OutboundCoalescer {
+    private final Map<UUID, Pending> pending = new HashMap<>();
+
+    private static final class Pending {
+        private final ServerPlayer player;
+        private final List<PlayMusicPacket> music = new ArrayList<>(2);
+        private Component overlay;
+
+        private Pending(ServerPlayer player) {
+            this.player = player;
+        }
+    }
+
+    public void addMusic(ServerPlayer player, PlayMusicPacket packet) {
+        List<PlayMusicPacket> music = pendingFor(player).music;
+        // Se une con lo anterior hacia atrás; la orden resultante va al final, en el lugar de la más nueva.
+        for (int i = music.size() - 1; i >= 0; i--) {
+            PlayMusicPacket earlier = music.get(i);
+            PlayMusicPacket merged = PlayMusicPacket.coalesce(earlier, packet);
+            if (merged != null) {
+                music.remove(i);
+                packet = merged;
+            } else if (PlayMusicPacket.isPlayback(earlier) && PlayMusicPacket.isPlayback(packet)) {
+                break;
+            }
+        }
+        music.add(packet);
+    }
+
+    public void addOverlay(ServerPlayer player, Component message) {
+        pendingFor(player).overlay = message;
+    }
+
+    /**
+     * Envía lo acumulado: un paquete suelto si quedó un solo mensaje, si no un {@link PacketMessageBundle}.
+     */
+    public void flush() {
+        if (pending.isEmpty()) return;
+        for (Pending p : pending.values()) {
+            if (p.player.hasDisconnected()) continue;
+            int count = p.music.size() + (p.overlay != null ? 1 : 0);
+            Object packet;
+            if (count > 1) {
+                packet = new PacketMessageBundle(p.music, p.overlay);
+            } else if (p.overlay != null) {
+                packet = new PacketOverlayMessage(p.overlay);
+            } else {
+                packet = p.music.get(0);
+            }
+            NetworkHandler.CHANNEL.send(PacketDistributor.PLAYER.with(() -> p.player), packet);
+        }
+        pending.clear();
+    }
+
+    public void remove(ServerPlayer player) {
+        pending.remove(player.getUUID());
+    }
+
+    public void clear() {
+        pending.clear();
+    }
+
+    private Pending pendingFor(ServerPlayer player) {
+        Pending p = pending.get(player.getUUID());
+        // Tras reconectar en el mismo tick la entidad es otra: se descarta lo de la anterior.
+        if (p == null || p.player != player) {
+            p = new Pending(player);
+            pending.put(player.getUUID(), p);
+        }
+        return p;
+    }
+}
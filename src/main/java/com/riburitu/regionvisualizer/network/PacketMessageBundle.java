@@ -0,0 +1,56 @@
+package com.riburitu.regionvisualizer.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Todo lo que un jugador recibió de música y mensajes en un tick, en un solo paquete (ver
+ * {@link OutboundCoalescer}). Se aplica en el mismo orden en que se envió.
+ */
+public class PacketMessageBundle {
+    private final List<PlayMusicPacket> music;
+    private final Component overlay;
+
+    public PacketMessageBundle(List<PlayMusicPacket> music, Component overlay) {
+        this.music = music;
+        this.overlay = overlay;
+    }
+
+    public static void encode(PacketMessageBundle msg, FriendlyByteBuf buf) {
+        buf.writeVarInt(msg.music.size());
+        for (PlayMusicPacket pkt : msg.music) {
+            PlayMusicPacket.encode(pkt, buf);
+        }
+        buf.writeBoolean(msg.overlay != null);
+        if (msg.overlay != null) buf.writeComponent(msg.overlay);
+    }
+
+    public static PacketMessageBundle decode(FriendlyByteBuf buf) {
+        int count = buf.readVarInt();
+        List<PlayMusicPacket> music = new ArrayList<>(Math.min(count, 16));
+        for (int i = 0; i < count; i++) {
+            music.add(PlayMusicPacket.decode(buf));
+        }
+        Component overlay = buf.readBoolean() ? buf.readComponent() : null;
+        return new PacketMessageBundle(music, overlay);
+    }
+
+    public static void handle(PacketMessageBundle msg, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            if (ctx.get().getDirection().getReceptionSide().isClient()) {
+                for (PlayMusicPacket pkt : msg.music) {
+                    PlayMusicPacket.handleClientSide(pkt);
+                }
+                if (msg.overlay != null) {
+                    net.minecraft.client.Minecraft.getInstance().gui.setOverlayMessage(msg.overlay, false);
+                }
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
@@ -0,0 +1,41 @@
+package com.riburitu.regionvisualizer.network;
+
+import com.riburitu.regionvisualizer.RegionVisualizer;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Acuse del cliente: ya escribió en disco los primeros {@code received} bytes de la pista.
+ * Abre la ventana de envío del servidor.
+ */
+public class PacketMusicAck {
+    private final int trackId;
+    private final long received;
+
+    public PacketMusicAck(int trackId, long received) {
+        this.trackId = trackId;
+        this.received = received;
+    }
+
+    public static void encode(PacketMusicAck msg, FriendlyByteBuf buf) {
+        buf.writeVarInt(msg.trackId);
+        buf.writeVarLong(msg.received);
+    }
+
+    public static PacketMusicAck decode(FriendlyByteBuf buf) {
+        return new PacketMusicAck(buf.readVarInt(), buf.readVarLong());
+    }
+
+    public static void handle(PacketMusicAck msg, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            ServerPlayer player = ctx.get().getSender();
+            if (player != null) {
+                RegionVisualizer.INSTANCE.getMusicTransfers().acknowledge(player, msg.trackId, msg.received);
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
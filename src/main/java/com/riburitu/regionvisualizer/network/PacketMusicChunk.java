@@ -0,0 +1,48 @@
+package com.riburitu.regionvisualizer.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Un trozo del archivo de una pista, desde {@code offset}; {@code size} es el tamaño total
+ * del archivo y {@code last} marca el último trozo.
+ */
+public class PacketMusicChunk {
+    private final int trackId;
+    private final long offset;
+    private final long size;
+    private final boolean last;
+    private final byte[] data;
+
+    public PacketMusicChunk(int trackId, long offset, long size, boolean last, byte[] data) {
+        this.trackId = trackId;
+        this.offset = offset;
+        this.size = size;
+        this.last = last;
+        this.data = data;
+    }
+
+    public static void encode(PacketMusicChunk msg, FriendlyByteBuf buf) {
+        buf.writeVarInt(msg.trackId);
+        buf.writeVarLong(msg.offset);
+        buf.writeVarLong(msg.size);
+        buf.writeBoolean(msg.last);
+        buf.writeByteArray(msg.data);
+    }
+
+    public static PacketMusicChunk decode(FriendlyByteBuf buf) {
+        return new PacketMusicChunk(buf.readVarInt(), buf.readVarLong(), buf.readVarLong(), buf.readBoolean(),
+            buf.readByteArray(MusicTransferService.CHUNK_SIZE));
+    }
+
+    public static void handle(PacketMusicChunk msg, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            if (ctx.get().getDirection().getReceptionSide().isClient()) {
+                com.riburitu.regionvisualizer.client.sound.MusicDownloads.onChunk(msg.trackId, msg.offset, msg.size, msg.last, msg.data);
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
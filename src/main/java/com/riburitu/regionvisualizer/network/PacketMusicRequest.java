@@ -0,0 +1,41 @@
+package com.riburitu.regionvisualizer.network;
+
+import com.riburitu.regionvisualizer.RegionVisualizer;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Pedido del cliente: el archivo de una pista del diccionario a partir de {@code offset}
+ * (lo que ya tiene de una descarga anterior).
+ */
+public class PacketMusicRequest {
+    private final int trackId;
+    private final long offset;
+
+    public PacketMusicRequest(int trackId, long offset) {
+        this.trackId = trackId;
+        this.offset = offset;
+    }
+
+    public static void encode(PacketMusicRequest msg, FriendlyByteBuf buf) {
+        buf.writeVarInt(msg.trackId);
+        buf.writeVarLong(msg.offset);
+    }
+
+    public static PacketMusicRequest decode(FriendlyByteBuf buf) {
+        return new PacketMusicRequest(buf.readVarInt(), buf.readVarLong());
+    }
+
+    public static void handle(PacketMusicRequest msg, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            ServerPlayer player = ctx.get().getSender();
+            if (player != null) {
+                RegionVisualizer.INSTANCE.getMusicTransfers().request(player, msg.trackId, msg.offset);
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
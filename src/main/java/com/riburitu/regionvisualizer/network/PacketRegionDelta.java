@@ -0,0 +1,101 @@
+package com.riburitu.regionvisualizer.network;
+
+import net.minecraft.core.registries.Registries;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Cambios en las regiones de una dimensión que llevan su revisión de {@code revision - 1} a
+ * {@code revision}. Solo se envía a los jugadores de esa dimensión; si al cliente le falta
+ * una revisión intermedia pide el conjunto completo con {@link PacketRegionResync}. Con más
+ * de {@link #MAX_CHANGES} cambios el servidor manda el conjunto completo en páginas.
+ */
+public class PacketRegionDelta {
+    public enum Op {
+        ADD, UPDATE, REMOVE
+    }
+
+    static final int MAX_CHANGES = PacketRegionMirror.PAGE_BYTES / (PacketRegionMirror.Entry.MAX_BYTES + 1);
+
+    private static final Op[] OPS = Op.values();
+
+    /**
+     * Un cambio; {@code entry} es null en {@link Op#REMOVE}.
+     */
+    public record Change(Op op, int id, PacketRegionMirror.Entry entry) {
+        public static Change add(PacketRegionMirror.Entry entry) {
+            return new Change(Op.ADD, entry.id(), entry);
+        }
+
+        public static Change update(PacketRegionMirror.Entry entry) {
+            return new Change(Op.UPDATE, entry.id(), entry);
+        }
+
+        public static Change remove(int id) {
+            return new Change(Op.REMOVE, id, null);
+        }
+    }
+
+    private final ResourceKey<Level> dimension;
+    private final int revision;
+    private final List<Change> changes;
+
+    public PacketRegionDelta(ResourceKey<Level> dimension, int revision, List<Change> changes) {
+        this.dimension = dimension;
+        this.revision = revision;
+        this.changes = changes;
+    }
+
+    public static void encode(PacketRegionDelta msg, FriendlyByteBuf buf) {
+        buf.writeResourceKey(msg.dimension);
+        buf.writeVarInt(msg.revision);
+        buf.writeVarInt(msg.changes.size());
+        for (Change change : msg.changes) {
+            buf.writeByte(change.op().ordinal());
+            if (change.op() == Op.REMOVE) {
+                buf.writeVarInt(change.id());
+            } else {
+                change.entry().write(buf);
+            }
+        }
+    }
+
+    public static PacketRegionDelta decode(FriendlyByteBuf buf) {
+        ResourceKey<Level> dimension = buf.readResourceKey(Registries.DIMENSION);
+        int revision = buf.readVarInt();
+        int count = buf.readVarInt();
+        if (count < 0 || count > MAX_CHANGES) {
+            throw new IllegalArgumentException("Demasiados cambios de regiones en un paquete: " + count);
+        }
+        List<Change> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int opcode = buf.readUnsignedByte();
+            if (opcode >= OPS.length) {
+                throw new IllegalArgumentException("Cambio de región desconocido: " + opcode);
+            }
+            Op op = OPS[opcode];
+            if (op == Op.REMOVE) {
+                changes.add(Change.remove(buf.readVarInt()));
+            } else {
+                PacketRegionMirror.Entry entry = PacketRegionMirror.Entry.read(buf);
+                changes.add(new Change(op, entry.id(), entry));
+            }
+        }
+        return new PacketRegionDelta(dimension, revision, changes);
+    }
+
+    public static void handle(PacketRegionDelta msg, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            if (ctx.get().getDirection().getReceptionSide().isClient()) {
+                com.riburitu.regionvisualizer.client.RegionMirror.applyDelta(msg.dimension, msg.revision, msg.changes);
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
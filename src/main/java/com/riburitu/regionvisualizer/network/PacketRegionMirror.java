@@ -0,0 +1,128 @@
+package com.riburitu.regionvisualizer.network;
+
+import com.riburitu.regionvisualizer.util.RegionHysteresis;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Una página de las regiones de la dimensión del jugador para el espejo del cliente, con la
+ * revisión de esa dimensión en el servidor y la histéresis de los bordes que usa el servidor.
+ * El conjunto se reparte en páginas de como mucho {@link #PAGE_BYTES} (ver {@link #pages}) para
+ * no pasar el límite de un paquete; el cliente lo aplica al llegar la última. Los cambios
+ * posteriores llegan como {@link PacketRegionDelta}.
+ */
+public class PacketRegionMirror {
+    public static final int FLAG_LOOP = 1;
+    public static final int FLAG_FADE = 2;
+    static final int PAGE_BYTES = 256 * 1024;
+    static final int MAX_PAGE_ENTRIES = PAGE_BYTES / Entry.MAX_BYTES;
+
+    /**
+     * Una región: id, límites mínimo y máximo, pista, banderas y prioridad. Los límites van
+     * como enteros completos y no empaquetados con {@code BlockPos.asLong}, que solo guarda
+     * 12 bits de Y y las regiones pueden llegar mucho más arriba. El cliente las ordena por
+     * prioridad, volumen e id; el servidor desempata por nombre, así que en un empate exacto
+     * puede corregir al cliente.
+     */
+    public record Entry(int id, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int trackId, int flags, int priority) {
+        // Tres VarInt de hasta 5 bytes, seis int y las banderas.
+        static final int MAX_BYTES = 3 * 5 + 6 * 4 + 1;
+
+        void write(FriendlyByteBuf buf) {
+            buf.writeVarInt(id);
+            buf.writeInt(minX);
+            buf.writeInt(minY);
+            buf.writeInt(minZ);
+            buf.writeInt(maxX);
+            buf.writeInt(maxY);
+            buf.writeInt(maxZ);
+            buf.writeVarInt(trackId);
+            buf.writeByte(flags);
+            buf.writeVarInt(priority);
+        }
+
+        static Entry read(FriendlyByteBuf buf) {
+            return new Entry(buf.readVarInt(), buf.readInt(), buf.readInt(), buf.readInt(), buf.readInt(), buf.readInt(), buf.readInt(),
+                buf.readVarInt(), buf.readUnsignedByte(), buf.readVarInt());
+        }
+    }
+
+    private final ResourceKey<Level> dimension;
+    private final int revision;
+    private final int page;
+    private final boolean last;
+    private final List<Entry> entries;
+    private final RegionHysteresis hysteresis;
+
+    public PacketRegionMirror(ResourceKey<Level> dimension, int revision, int page, boolean last, List<Entry> entries, RegionHysteresis hysteresis) {
+        this.dimension = dimension;
+        this.revision = revision;
+        this.page = page;
+        this.last = last;
+        this.entries = entries;
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * El conjunto completo repartido en páginas; siempre hay al menos una, aunque esté vacía.
+     */
+    public static List<PacketRegionMirror> pages(ResourceKey<Level> dimension, int revision, List<Entry> entries, RegionHysteresis hysteresis) {
+        List<PacketRegionMirror> pages = new ArrayList<>();
+        int page = 0;
+        int from = 0;
+        do {
+            int to = Math.min(entries.size(), from + MAX_PAGE_ENTRIES);
+            pages.add(new PacketRegionMirror(dimension, revision, page++, to == entries.size(),
+                List.copyOf(entries.subList(from, to)), hysteresis));
+            from = to;
+        } while (from < entries.size());
+        return pages;
+    }
+
+    public static void encode(PacketRegionMirror msg, FriendlyByteBuf buf) {
+        buf.writeResourceKey(msg.dimension);
+        buf.writeVarInt(msg.revision);
+        buf.writeVarInt(msg.page);
+        buf.writeBoolean(msg.last);
+        buf.writeVarInt(msg.entries.size());
+        for (Entry entry : msg.entries) {
+            entry.write(buf);
+        }
+        buf.writeVarInt(msg.hysteresis.entryMargin());
+        buf.writeVarInt(msg.hysteresis.exitMargin());
+        buf.writeVarLong(msg.hysteresis.minDwellMillis());
+    }
+
+    public static PacketRegionMirror decode(FriendlyByteBuf buf) {
+        ResourceKey<Level> dimension = buf.readResourceKey(Registries.DIMENSION);
+        int revision = buf.readVarInt();
+        int page = buf.readVarInt();
+        boolean last = buf.readBoolean();
+        int count = buf.readVarInt();
+        if (count < 0 || count > MAX_PAGE_ENTRIES) {
+            throw new IllegalArgumentException("Página de regiones demasiado grande: " + count);
+        }
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(Entry.read(buf));
+        }
+        RegionHysteresis hysteresis = new RegionHysteresis(buf.readVarInt(), buf.readVarInt(), buf.readVarLong());
+        return new PacketRegionMirror(dimension, revision, page, last, entries, hysteresis);
+    }
+
+    public static void handle(PacketRegionMirror msg, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            if (ctx.get().getDirection().getReceptionSide().isClient()) {
+                com.riburitu.regionvisualizer.client.RegionMirror.applyPage(msg.dimension, msg.revision, msg.page, msg.last, msg.entries, msg.hysteresis);
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
@@ -0,0 +1,41 @@
+package com.riburitu.regionvisualizer.network;
+
+import com.riburitu.regionvisualizer.RegionVisualizer;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Pedido del cliente: le falta una revisión de las regiones de {@code dimension} y quiere
+ * el conjunto completo. Si el jugador ya cambió de dimensión se ignora.
+ */
+public class PacketRegionResync {
+    private final ResourceKey<Level> dimension;
+
+    public PacketRegionResync(ResourceKey<Level> dimension) {
+        this.dimension = dimension;
+    }
+
+    public static void encode(PacketRegionResync msg, FriendlyByteBuf buf) {
+        buf.writeResourceKey(msg.dimension);
+    }
+
+    public static PacketRegionResync decode(FriendlyByteBuf buf) {
+        return new PacketRegionResync(buf.readResourceKey(Registries.DIMENSION));
+    }
+
+    public static void handle(PacketRegionResync msg, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            ServerPlayer player = ctx.get().getSender();
+            if (player != null && player.level().dimension().equals(msg.dimension)) {
+                RegionVisualizer.INSTANCE.getRegionMirrorSync().requestResync(player);
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
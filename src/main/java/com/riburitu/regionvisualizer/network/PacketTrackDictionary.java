@@ -0,0 +1,57 @@
+package com.riburitu.regionvisualizer.network;
+
+import com.riburitu.regionvisualizer.util.MusicTrack;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Diccionario de pistas de la sesión: completo al entrar al servidor ({@code reset}) y
+ * después solo las pistas que se agregan. Cada pista: id (varint), archivo, SHA-256 y
+ * duración en milisegundos (varint).
+ */
+public class PacketTrackDictionary {
+    private static final int MAX_HASH_BYTES = 32;
+
+    private final boolean reset;
+    private final List<MusicTrack> tracks;
+
+    public PacketTrackDictionary(boolean reset, List<MusicTrack> tracks) {
+        this.reset = reset;
+        this.tracks = tracks;
+    }
+
+    public static void encode(PacketTrackDictionary msg, FriendlyByteBuf buf) {
+        buf.writeBoolean(msg.reset);
+        buf.writeVarInt(msg.tracks.size());
+        for (MusicTrack track : msg.tracks) {
+            buf.writeVarInt(track.id());
+            buf.writeUtf(track.fileName());
+            buf.writeByteArray(track.sha256());
+            buf.writeVarInt(track.durationMillis());
+        }
+    }
+
+    public static PacketTrackDictionary decode(FriendlyByteBuf buf) {
+        boolean reset = buf.readBoolean();
+        int count = buf.readVarInt();
+        List<MusicTrack> tracks = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            tracks.add(new MusicTrack(buf.readVarInt(), buf.readUtf(), buf.readByteArray(MAX_HASH_BYTES), buf.readVarInt()));
+        }
+        return new PacketTrackDictionary(reset, tracks);
+    }
+
+    public static void handle(PacketTrackDictionary msg, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            if (ctx.get().getDirection().getReceptionSide().isClient()) {
+                com.riburitu.regionvisualizer.client.sound.ClientMusicTracks.apply(msg.reset, msg.tracks);
+                com.riburitu.regionvisualizer.client.sound.MusicDownloads.check(msg.tracks);
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
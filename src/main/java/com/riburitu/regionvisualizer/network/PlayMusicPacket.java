@@ -4,86 +4,226 @@ import net.minecraft.network.FriendlyByteBuf;
 import net.minecraftforge.network.NetworkEvent;
 import java.util.function.Supplier;
 
+/**
+ * Orden de música del servidor al cliente. Se envía como un byte con la operación seguido
+ * solo de lo que esa operación usa: las banderas en un byte, la duración del fade si no es
+ * la del cliente, y la pista como id (varint) del diccionario de la sesión
+ * ({@link PacketTrackDictionary}).
+ */
 public class PlayMusicPacket {
-    private final String command;
+    public enum Op {
+        PLAY, STOP, SET_VOLUME, GET_VOLUME, LIST, INIT, CONFIG
+    }
+
+    private static final Op[] OPS = Op.values();
+    private static final int FLAG_LOOP = 1;
+    private static final int FLAG_FADE = 2;
+    private static final int FLAG_FADE_DURATION = 4;
+    // Solo en STOP: detener únicamente si suena esa pista.
+    private static final int FLAG_TRACK = 8;
+    // Solo en PLAY: volver a empezar aunque esa pista ya esté sonando.
+    private static final int FLAG_RESTART = 16;
+    public static final int NO_TRACK_ID = 0;
+
+    public static final PlayMusicPacket INIT = new PlayMusicPacket(Op.INIT, 0, 0, NO_TRACK_ID, 0);
+    public static final PlayMusicPacket LIST = new PlayMusicPacket(Op.LIST, 0, 0, NO_TRACK_ID, 0);
+    public static final PlayMusicPacket GET_VOLUME = new PlayMusicPacket(Op.GET_VOLUME, 0, 0, NO_TRACK_ID, 0);
+    public static final PlayMusicPacket CONFIG = new PlayMusicPacket(Op.CONFIG, 0, 0, NO_TRACK_ID, 0);
+
+    private final Op op;
+    private final int flags;
+    private final float fadeSeconds;
+    private final int trackId;
+    private final float volume;
 
-    public PlayMusicPacket(String command) {
-        this.command = command;
+    private PlayMusicPacket(Op op, int flags, float fadeSeconds, int trackId, float volume) {
+        this.op = op;
+        this.flags = flags;
+        this.fadeSeconds = fadeSeconds;
+        this.trackId = trackId;
+        this.volume = volume;
+    }
+
+    public static PlayMusicPacket play(int trackId, boolean loop, boolean fade) {
+        return play(trackId, loop, fade, -1);
+    }
+
+    /**
+     * Con {@code fadeSeconds} negativo el cliente usa su propia duración de fade.
+     */
+    public static PlayMusicPacket play(int trackId, boolean loop, boolean fade, float fadeSeconds) {
+        if (trackId == NO_TRACK_ID) throw new IllegalArgumentException("Orden de reproducción sin pista");
+        return new PlayMusicPacket(Op.PLAY, flags(loop, fade, fadeSeconds), fadeSeconds, trackId, 0);
+    }
+
+    /**
+     * La misma orden de reproducción, pero que reinicia la pista si ya suena (las de las
+     * regiones no lo hacen: el espejo del cliente puede haberla arrancado antes).
+     */
+    public PlayMusicPacket withRestart() {
+        return new PlayMusicPacket(op, flags | FLAG_RESTART, fadeSeconds, trackId, volume);
+    }
+
+    public static PlayMusicPacket stop(boolean fade) {
+        return stop(NO_TRACK_ID, fade, -1);
+    }
+
+    /**
+     * Con {@code trackId} distinto de 0 el cliente solo se detiene si está sonando esa pista.
+     */
+    public static PlayMusicPacket stop(int trackId, boolean fade) {
+        return stop(trackId, fade, -1);
+    }
+
+    public static PlayMusicPacket stop(int trackId, boolean fade, float fadeSeconds) {
+        int flags = flags(false, fade, fadeSeconds) | (trackId != NO_TRACK_ID ? FLAG_TRACK : 0);
+        return new PlayMusicPacket(Op.STOP, flags, fadeSeconds, trackId, 0);
+    }
+
+    public static PlayMusicPacket setVolume(float volume) {
+        return new PlayMusicPacket(Op.SET_VOLUME, 0, 0, NO_TRACK_ID, volume);
+    }
+
+    private static int flags(boolean loop, boolean fade, float fadeSeconds) {
+        return (loop ? FLAG_LOOP : 0) | (fade ? FLAG_FADE : 0) | (fade && fadeSeconds >= 0 ? FLAG_FADE_DURATION : 0);
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    /**
+     * Une dos órdenes enviadas en el mismo tick en una sola con el mismo efecto final en el
+     * cliente, o devuelve null si no se pueden unir. Una reproducción o detención reemplaza a
+     * la anterior, salvo que dos reproducciones de la misma pista conservan el reinicio de la
+     * primera; una detención de la pista que la orden anterior reproducía queda como detención
+     * incondicional.
+     */
+    static PlayMusicPacket coalesce(PlayMusicPacket earlier, PlayMusicPacket later) {
+        if (isPlayback(earlier) && isPlayback(later)) {
+            if (later.op == Op.PLAY) {
+                // Sin esto, una orden de región tras un /playmusic del mismo tick anularía el reinicio.
+                return earlier.op == Op.PLAY && earlier.trackId == later.trackId
+                        && (earlier.flags & FLAG_RESTART) != 0 ? later.withRestart() : later;
+            }
+            if (later.trackId == NO_TRACK_ID) return later;
+            if (earlier.op == Op.PLAY) {
+                return earlier.trackId == later.trackId
+                    ? new PlayMusicPacket(Op.STOP, later.flags & ~FLAG_TRACK, later.fadeSeconds, NO_TRACK_ID, 0)
+                    : earlier;
+            }
+            if (earlier.trackId == NO_TRACK_ID) return earlier;
+            return earlier.trackId == later.trackId ? later : null;
+        }
+        // Volumen, inicialización, lista y configuración: solo cuenta la última de cada una.
+        return earlier.op == later.op ? later : null;
+    }
+
+    static boolean isPlayback(PlayMusicPacket pkt) {
+        return pkt.op == Op.PLAY || pkt.op == Op.STOP;
     }
 
     public static void encode(PlayMusicPacket pkt, FriendlyByteBuf buf) {
-        buf.writeUtf(pkt.command);
+        buf.writeByte(pkt.op.ordinal());
+        switch (pkt.op) {
+            case PLAY -> {
+                buf.writeByte(pkt.flags);
+                if ((pkt.flags & FLAG_FADE_DURATION) != 0) buf.writeFloat(pkt.fadeSeconds);
+                buf.writeVarInt(pkt.trackId);
+            }
+            case STOP -> {
+                buf.writeByte(pkt.flags);
+                if ((pkt.flags & FLAG_FADE_DURATION) != 0) buf.writeFloat(pkt.fadeSeconds);
+                if ((pkt.flags & FLAG_TRACK) != 0) buf.writeVarInt(pkt.trackId);
+            }
+            case SET_VOLUME -> buf.writeFloat(pkt.volume);
+            default -> {
+            }
+        }
     }
 
     public static PlayMusicPacket decode(FriendlyByteBuf buf) {
-        return new PlayMusicPacket(buf.readUtf(32767));
+        int opcode = buf.readUnsignedByte();
+        if (opcode >= OPS.length) {
+            throw new IllegalArgumentException("Operación de música desconocida: " + opcode);
+        }
+        Op op = OPS[opcode];
+        return switch (op) {
+            case PLAY -> {
+                int flags = buf.readUnsignedByte();
+                float fadeSeconds = (flags & FLAG_FADE_DURATION) != 0 ? buf.readFloat() : -1;
+                yield new PlayMusicPacket(op, flags, fadeSeconds, buf.readVarInt(), 0);
+            }
+            case STOP -> {
+                int flags = buf.readUnsignedByte();
+                float fadeSeconds = (flags & FLAG_FADE_DURATION) != 0 ? buf.readFloat() : -1;
+                int trackId = (flags & FLAG_TRACK) != 0 ? buf.readVarInt() : NO_TRACK_ID;
+                yield new PlayMusicPacket(op, flags, fadeSeconds, trackId, 0);
+            }
+            case SET_VOLUME -> setVolume(buf.readFloat());
+            default -> new PlayMusicPacket(op, 0, 0, NO_TRACK_ID, 0);
+        };
     }
 
     public static void handle(PlayMusicPacket pkt, Supplier<NetworkEvent.Context> ctx) {
         ctx.get().enqueueWork(() -> {
             if (ctx.get().getDirection().getReceptionSide().isClient()) {
-                handleClientSide(pkt.command);
+                handleClientSide(pkt);
             }
         });
         ctx.get().setPacketHandled(true);
     }
 
-    private static void handleClientSide(String command) {
+    static void handleClientSide(PlayMusicPacket pkt) {
         try {
-            System.out.println("[RegionVisualizer] 📦 Paquete recibido: " + command);
-            
-            if (command.startsWith("VOLUME:") || command.equals("GET_VOLUME") || command.equals("CONFIG")) {
-                com.riburitu.regionvisualizer.client.sound.MusicManager.handleCommand(command);
-                return;
-            }
+            boolean fade = (pkt.flags & FLAG_FADE) != 0;
+            float fadeSeconds = (pkt.flags & FLAG_FADE_DURATION) != 0
+                ? pkt.fadeSeconds
+                : com.riburitu.regionvisualizer.client.sound.MusicManager.getFadeDuration();
 
-            if (command.startsWith("MUSIC:")) {
-                String[] parts = command.split(":", 4);
-                if (parts.length < 4) {
-                    System.err.println("[RegionVisualizer] ❌ Comando de música inválido: " + command);
-                    return;
+            switch (pkt.op) {
+                case PLAY -> {
+                    String fileName = com.riburitu.regionvisualizer.client.sound.ClientMusicTracks.getPlayableName(pkt.trackId);
+                    if (fileName == null) {
+                        System.err.println("[RegionVisualizer] ⚠️ Pista desconocida: " + pkt.trackId);
+                        return;
+                    }
+                    if ((pkt.flags & FLAG_RESTART) == 0
+                            && com.riburitu.regionvisualizer.client.sound.ClientMusicTracks.getPlayingId() == pkt.trackId) {
+                        // El espejo del cliente ya la arrancó: el servidor coincide, no hay nada que corregir.
+                        return;
+                    }
+                    com.riburitu.regionvisualizer.client.sound.MusicManager.play(fileName, (pkt.flags & FLAG_LOOP) != 0, fade, fadeSeconds);
+                    com.riburitu.regionvisualizer.client.sound.ClientMusicTracks.setPlayingId(pkt.trackId);
                 }
-                String filename = parts[1];
-                boolean loop = Boolean.parseBoolean(parts[2]);
-                boolean fade = Boolean.parseBoolean(parts[3]);
-                com.riburitu.regionvisualizer.client.sound.MusicManager.play(filename, loop, fade);
-                return;
-            }
-
-            if (command.startsWith("STOP:")) {
-                String[] parts = command.split(":", 2);
-                boolean fade = parts.length > 1 && Boolean.parseBoolean(parts[1]);
-                com.riburitu.regionvisualizer.client.sound.MusicManager.stop(fade);
-                System.out.println("[RegionVisualizer] 🛑 Música detenida por comando del servidor, fade=" + fade);
-                return;
-            }
-
-            switch (command.toUpperCase()) {
-                case "INIT":
+                case STOP -> {
+                    int playing = com.riburitu.regionvisualizer.client.sound.ClientMusicTracks.getPlayingId();
+                    if (pkt.trackId != NO_TRACK_ID && playing != pkt.trackId) {
+                        // Esa pista ya no suena: la reemplazó otra o el espejo del cliente ya la detuvo.
+                        return;
+                    }
+                    com.riburitu.regionvisualizer.client.sound.MusicManager.stop(fade, fadeSeconds);
+                    com.riburitu.regionvisualizer.client.sound.ClientMusicTracks.setPlayingId(NO_TRACK_ID);
+                    System.out.println("[RegionVisualizer] 🛑 Música detenida por comando del servidor, fade=" + fade);
+                }
+                case SET_VOLUME -> com.riburitu.regionvisualizer.client.sound.MusicManager.applyServerVolume(pkt.volume);
+                case GET_VOLUME -> com.riburitu.regionvisualizer.client.sound.MusicManager.showCurrentVolume();
+                case CONFIG -> com.riburitu.regionvisualizer.client.sound.MusicManager.openConfigScreen();
+                case INIT -> {
                     com.riburitu.regionvisualizer.client.sound.MusicManager.forceInitialize();
                     com.riburitu.regionvisualizer.client.sound.MusicManager.listAvailableFiles(false);
                     System.out.println("[RegionVisualizer] 🔄 Sistema de música reinicializado");
-                    break;
-                    
-                case "LIST":
+                }
+                case LIST -> {
                     com.riburitu.regionvisualizer.client.sound.MusicManager.listAvailableFiles(true);
                     System.out.println("[RegionVisualizer] 📝 Lista de música solicitada");
-                    break;
-                    
-                default:
-                    if (!command.trim().isEmpty()) {
-                        com.riburitu.regionvisualizer.client.sound.MusicManager.play(command, false, false);
-                        System.out.println("[RegionVisualizer] 🎵 Reproduciendo: " + command);
-                    } else {
-                        System.err.println("[RegionVisualizer] ⚠️ Comando vacío recibido");
-                    }
-                    break;
+                }
             }
 
         } catch (Exception e) {
             System.err.println("[RegionVisualizer] ❌ Error manejando paquete de música: " + e.getMessage());
             e.printStackTrace();
-            
+
             try {
                 net.minecraft.client.Minecraft minecraft = net.minecraft.client.Minecraft.getInstance();
                 if (minecraft.player != null) {
@@ -96,4 +236,4 @@ public class PlayMusicPacket {
             }
         }
     }
-}
\ No newline at end of file
+}
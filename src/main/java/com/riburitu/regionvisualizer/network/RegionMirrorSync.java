@@ -0,0 +1,197 @@
+package com.riburitu.regionvisualizer.network;
+
+import com.riburitu.regionvisualizer.util.MusicTrackRegistry;
+import com.riburitu.regionvisualizer.util.Region;
+import com.riburitu.regionvisualizer.util.RegionHysteresis;
+import com.riburitu.regionvisualizer.util.RegionManager;
+import com.riburitu.regionvisualizer.util.RegionSnapshot;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.network.PacketDistributor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Mantiene en cada cliente una copia de las regiones de su dimensión (límites, pista y
+ * banderas), con la que el cliente detecta las transiciones en cada frame y arranca la
+ * música sin esperar al servidor. El servidor sigue mandando: sus órdenes de música solo
+ * cambian algo en el cliente cuando no coinciden con lo que ya está sonando.
+ *
+ * Cada dimensión lleva un número de revisión. El conjunto completo solo se manda al entrar,
+ * al cambiar de dimensión o cuando el cliente lo pide; cada edición se difunde como un
+ * {@link PacketRegionDelta} a los jugadores de esa dimensión, armado solo con las regiones que
+ * la instantánea marca como cambiadas. Solo se usa en el hilo del servidor.
+ */
+public class RegionMirrorSync {
+    private final RegionManager regionManager;
+    private final MusicTrackRegistry musicTracks;
+    private final Map<ResourceKey<Level>, DimensionState> dimensions = new HashMap<>();
+    // Dimensión cuyo conjunto completo ya recibió cada jugador.
+    private final Map<UUID, ResourceKey<Level>> players = new HashMap<>();
+    private RegionHysteresis hysteresis = RegionHysteresis.NONE;
+
+    private static final class DimensionState {
+        // Secuencia de cambios de la dimensión (ver RegionSnapshot#getChangeSequence) ya difundida.
+        private long sequence;
+        private int revision;
+        private Int2ObjectMap<PacketRegionMirror.Entry> entries = new Int2ObjectOpenHashMap<>();
+        private List<PacketRegionMirror> full;
+    }
+
+    public RegionMirrorSync(RegionManager regionManager, MusicTrackRegistry musicTracks) {
+        this.regionManager = regionManager;
+        this.musicTracks = musicTracks;
+    }
+
+    /**
+     * Histéresis de los bordes que aplica el espejo del cliente; la misma que usa {@code RegionTracker}.
+     */
+    public void configure(RegionHysteresis hysteresis) {
+        this.hysteresis = hysteresis;
+        for (DimensionState state : dimensions.values()) {
+            state.full = null;
+        }
+    }
+
+    public void tick(MinecraftServer server) {
+        RegionSnapshot snapshot = regionManager.getSnapshot();
+        List<ServerPlayer> online = server.getPlayerList().getPlayers();
+        if (online.isEmpty()) return;
+
+        // Primero las diferencias de cada dimensión con jugadores, para que un conjunto
+        // completo enviado en este mismo tick ya lleve la última revisión.
+        Map<ResourceKey<Level>, List<ServerPlayer>> byDimension = new HashMap<>();
+        for (ServerPlayer player : online) {
+            byDimension.computeIfAbsent(player.level().dimension(), k -> new ArrayList<>()).add(player);
+        }
+        for (Map.Entry<ResourceKey<Level>, List<ServerPlayer>> e : byDimension.entrySet()) {
+            ResourceKey<Level> dimension = e.getKey();
+            DimensionState state = dimensions.computeIfAbsent(dimension, k -> new DimensionState());
+            long sequence = snapshot.getChangeSequence(dimension);
+            if (state.sequence == sequence) continue;
+
+            List<PacketRegionDelta.Change> changes = advance(snapshot, dimension, state);
+            state.sequence = sequence;
+            if (changes.isEmpty()) continue;
+            state.revision++;
+            state.full = null;
+
+            // Una importación o un fragmento grande no cabe en un paquete: esos jugadores
+            // reciben abajo el conjunto completo, en páginas.
+            PacketRegionDelta delta = changes.size() <= PacketRegionDelta.MAX_CHANGES
+                ? new PacketRegionDelta(dimension, state.revision, changes) : null;
+            for (ServerPlayer player : e.getValue()) {
+                if (!dimension.equals(players.get(player.getUUID()))) continue;
+                if (delta != null) {
+                    NetworkHandler.CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), delta);
+                } else {
+                    players.remove(player.getUUID());
+                }
+            }
+        }
+
+        for (ServerPlayer player : online) {
+            ResourceKey<Level> dimension = player.level().dimension();
+            if (!dimension.equals(players.get(player.getUUID()))) {
+                sendFull(player, dimension);
+            }
+        }
+    }
+
+    /**
+     * El cliente detectó un hueco en las revisiones: se le manda el conjunto completo actual.
+     */
+    public void requestResync(ServerPlayer player) {
+        ResourceKey<Level> dimension = player.level().dimension();
+        // Si la dimensión aún no tiene estado, el próximo tick le manda el conjunto de todos modos.
+        if (dimensions.containsKey(dimension) && dimension.equals(players.get(player.getUUID()))) {
+            sendFull(player, dimension);
+        }
+    }
+
+    public void remove(ServerPlayer player) {
+        players.remove(player.getUUID());
+    }
+
+    public void clear() {
+        players.clear();
+        dimensions.clear();
+    }
+
+    private void sendFull(ServerPlayer player, ResourceKey<Level> dimension) {
+        DimensionState state = dimensions.get(dimension);
+        if (state == null) return;
+        if (state.full == null) {
+            state.full = PacketRegionMirror.pages(dimension, state.revision, new ArrayList<>(state.entries.values()), hysteresis);
+        }
+        for (PacketRegionMirror page : state.full) {
+            NetworkHandler.CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), page);
+        }
+        players.put(player.getUUID(), dimension);
+    }
+
+    /**
+     * Aplica a lo último difundido los cambios de la dimensión desde {@code state.sequence} y
+     * devuelve las diferencias, vacías si no hubo.
+     */
+    private List<PacketRegionDelta.Change> advance(RegionSnapshot snapshot, ResourceKey<Level> dimension, DimensionState state) {
+        List<PacketRegionDelta.Change> changes = new ArrayList<>();
+        IntSet changed = snapshot.changedSince(dimension, state.sequence);
+        if (changed != null) {
+            for (int id : changed) {
+                Region region = snapshot.getById(id);
+                PacketRegionMirror.Entry entry = region != null && region.getDimension().equals(dimension) ? entry(region) : null;
+                diff(changes, state.entries.get(id), entry, id);
+                if (entry != null) {
+                    state.entries.put(id, entry);
+                } else {
+                    state.entries.remove(id);
+                }
+            }
+        } else {
+            // El tramo de cambios ya no se conserva (o la dimensión se vació): se compara todo.
+            Int2ObjectMap<PacketRegionMirror.Entry> current = new Int2ObjectOpenHashMap<>();
+            for (Region region : snapshot.getRegions()) {
+                if (region.getDimension().equals(dimension)) current.put(region.getId(), entry(region));
+            }
+            for (PacketRegionMirror.Entry entry : current.values()) {
+                diff(changes, state.entries.get(entry.id()), entry, entry.id());
+            }
+            for (int id : state.entries.keySet()) {
+                if (!current.containsKey(id)) changes.add(PacketRegionDelta.Change.remove(id));
+            }
+            state.entries = current;
+        }
+
+        return changes;
+    }
+
+    private static void diff(List<PacketRegionDelta.Change> changes, PacketRegionMirror.Entry previous, PacketRegionMirror.Entry entry, int id) {
+        if (entry == null) {
+            if (previous != null) changes.add(PacketRegionDelta.Change.remove(id));
+        } else if (previous == null) {
+            changes.add(PacketRegionDelta.Change.add(entry));
+        } else if (!previous.equals(entry)) {
+            changes.add(PacketRegionDelta.Change.update(entry));
+        }
+    }
+
+    PacketRegionMirror.Entry entry(Region region) {
+        // Igual que la música del servidor: un archivo que no se puede reproducir no cambia lo que suena.
+        int trackId = musicTracks.idOf(region.getMusicFile());
+        int flags = (region.isLoopEnabled() ? PacketRegionMirror.FLAG_LOOP : 0) | (region.isFadeEnabled() ? PacketRegionMirror.FLAG_FADE : 0);
+        return new PacketRegionMirror.Entry(region.getId(),
+            region.getMinX(), region.getMinY(), region.getMinZ(),
+            region.getMaxX(), region.getMaxY(), region.getMaxZ(),
+            trackId, flags, region.getPriority());
+    }
+}
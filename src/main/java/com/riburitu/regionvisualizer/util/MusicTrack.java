@@ -0,0 +1,8 @@
+package com.riburitu.regionvisualizer.util;
+
+/**
+ * Pista del diccionario de música de la sesión. {@code sha256} está vacío y
+ * {@code durationMillis} es 0 si el servidor no tiene el archivo o todavía no los calculó.
+ */
+public record MusicTrack(int id, String fileName, byte[] sha256, int durationMillis) {
+}
@@ -0,0 +1,264 @@
+package com.riburitu.regionvisualizer.util;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Diccionario de pistas de la sesión del servidor: a cada archivo de música le da un id
+ * pequeño que no cambia hasta que el servidor se detiene. Los clientes reciben el diccionario
+ * completo al entrar y después solo las pistas nuevas; los paquetes de música usan los ids.
+ *
+ * Al arrancar se registra todo lo que hay en la carpeta {@code music} del servidor. Las
+ * pistas que aparecen después (una región con un archivo nuevo) se registran al pedir su id
+ * y se avisan al oyente, que las envía a los jugadores conectados. Solo se registran archivos
+ * que existen y tienen un formato soportado.
+ *
+ * El SHA-256 y la duración se calculan en un hilo aparte: la pista se publica primero sin
+ * ellos y, cuando están, se vuelve a avisar al oyente con la misma id y los datos completos.
+ */
+public class MusicTrackRegistry {
+    private static final String[] SUPPORTED_FORMATS = {".ogg", ".wav"};
+    // Una página Ogg ocupa como mucho unos 64 KiB: la última cabe entera en este final del archivo.
+    private static final int OGG_TAIL_BYTES = 70 * 1024;
+    private static final byte[] OGG_CAPTURE = "OggS".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VORBIS_ID_HEADER = "\u0001vorbis".getBytes(StandardCharsets.US_ASCII);
+
+    private final ExecutorService hasher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RegionVisualizer-MusicHash");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, MusicTrack> byName = new HashMap<>();
+    private final List<MusicTrack> tracks = new ArrayList<>();
+    // Se lee fuera del cerrojo para no tocar el disco con él tomado.
+    private volatile Path musicFolder;
+    // Cambia en cada load(): los cálculos de una sesión anterior se descartan.
+    private int session;
+    private Consumer<MusicTrack> listener = track -> {};
+
+    public synchronized void setListener(Consumer<MusicTrack> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Empieza una sesión nueva con los archivos de la carpeta de música del servidor. Los
+     * hashes se calculan después, en segundo plano.
+     */
+    public synchronized void load(Path musicFolder) {
+        this.musicFolder = musicFolder.toAbsolutePath().normalize();
+        session++;
+        byName.clear();
+        tracks.clear();
+        if (!Files.isDirectory(musicFolder)) {
+            System.out.println("[RegionVisualizer] Sin carpeta de música en el servidor: " + musicFolder);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try (Stream<Path> files = Files.list(musicFolder)) {
+            files.filter(Files::isRegularFile)
+                .filter(path -> isSupported(path.getFileName().toString()))
+                .sorted()
+                .forEach(path -> register(path.getFileName().toString(), this.musicFolder.resolve(path.getFileName())));
+        } catch (IOException e) {
+            System.err.println("[RegionVisualizer] Error listando la carpeta de música " + musicFolder + ": " + e.getMessage());
+        }
+        System.out.println("[RegionVisualizer] Diccionario de música: " + tracks.size() + " pistas en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    public synchronized List<MusicTrack> getTracks() {
+        return List.copyOf(tracks);
+    }
+
+    public synchronized MusicTrack get(int id) {
+        return id > 0 && id <= tracks.size() ? tracks.get(id - 1) : null;
+    }
+
+    /**
+     * Archivo de la pista en la carpeta de música del servidor, o null si no existe.
+     */
+    public Path getFile(MusicTrack track) {
+        return track == null ? null : existingFile(musicFolder, track.fileName());
+    }
+
+    private static Path existingFile(Path folder, String fileName) {
+        if (folder == null) return null;
+        Path file = folder.resolve(fileName).normalize();
+        return file.startsWith(folder) && Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * Id de la pista, registrándola si es nueva; 0 si no hay archivo o su formato no es soportado.
+     */
+    public int idOf(String fileName) {
+        if (!isSupported(fileName)) return 0;
+        synchronized (this) {
+            MusicTrack track = byName.get(fileName);
+            if (track != null) return track.id();
+        }
+        // Un nombre mal escrito no recibe id: así no llega a los clientes como pista.
+        Path folder = musicFolder;
+        Path file = existingFile(folder, fileName);
+        if (file == null) return 0;
+        MusicTrack added = null;
+        MusicTrack track;
+        Consumer<MusicTrack> notify;
+        synchronized (this) {
+            // Otro hilo pudo registrarla mientras tanto, o load() cambiar de carpeta.
+            if (folder != musicFolder) return 0;
+            track = byName.get(fileName);
+            if (track == null) {
+                track = register(fileName, file);
+                added = track;
+            }
+            notify = listener;
+        }
+        if (added != null) notify.accept(added);
+        return track.id();
+    }
+
+    private MusicTrack register(String fileName, Path file) {
+        MusicTrack track = new MusicTrack(tracks.size() + 1, fileName, new byte[0], 0);
+        tracks.add(track);
+        byName.put(fileName, track);
+        int expected = session;
+        hasher.execute(() -> describe(expected, track, file));
+        return track;
+    }
+
+    /**
+     * Calcula el hash y la duración fuera del hilo del servidor y publica la pista completa.
+     */
+    private void describe(int expected, MusicTrack track, Path file) {
+        byte[] sha256;
+        try {
+            sha256 = hash(file);
+        } catch (IOException e) {
+            System.err.println("[RegionVisualizer] No se pudo leer " + file + ": " + e.getMessage());
+            return;
+        }
+        MusicTrack described = new MusicTrack(track.id(), track.fileName(), sha256, readDurationMillis(file));
+        Consumer<MusicTrack> notify;
+        synchronized (this) {
+            if (session != expected) return;
+            tracks.set(track.id() - 1, described);
+            byName.put(track.fileName(), described);
+            notify = listener;
+        }
+        notify.accept(described);
+    }
+
+    /**
+     * true si el archivo tiene un formato que el cliente sabe reproducir.
+     */
+    public static boolean isSupported(String fileName) {
+        if (fileName == null || fileName.isEmpty()) return false;
+        String name = fileName.toLowerCase(Locale.ROOT);
+        for (String format : SUPPORTED_FORMATS) {
+            if (name.endsWith(format)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * SHA-256 del archivo; el cliente lo usa para comparar sus archivos con los del diccionario.
+     */
+    public static byte[] hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Duración en milisegundos, o 0 si no se puede saber. Los WAV la traen en la cabecera;
+     * en un Ogg Vorbis sale de la posición de la última página y la frecuencia de muestreo.
+     */
+    static int readDurationMillis(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        try {
+            if (name.endsWith(".wav")) {
+                AudioFileFormat format = AudioSystem.getAudioFileFormat(file.toFile());
+                long frames = format.getFrameLength();
+                float rate = format.getFormat().getFrameRate();
+                return frames > 0 && rate > 0 ? (int) (frames * 1000 / rate) : 0;
+            }
+            if (name.endsWith(".ogg")) {
+                return readOggDurationMillis(file);
+            }
+        } catch (Exception e) {
+            System.err.println("[RegionVisualizer] No se pudo leer la duración de " + file + ": " + e.getMessage());
+        }
+        return 0;
+    }
+
+    private static int readOggDurationMillis(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            long size = channel.size();
+            ByteBuffer head = readAt(channel, 0, (int) Math.min(size, 4096));
+            int header = indexOf(head, VORBIS_ID_HEADER, 0);
+            // Tras "\1vorbis": versión (4 bytes), canales (1) y frecuencia (4).
+            if (header < 0 || header + 16 > head.limit()) return 0;
+            long rate = Integer.toUnsignedLong(head.getInt(header + 12));
+
+            int tailLength = (int) Math.min(size, OGG_TAIL_BYTES);
+            ByteBuffer tail = readAt(channel, size - tailLength, tailLength);
+            int page = -1;
+            for (int i = indexOf(tail, OGG_CAPTURE, 0); i >= 0; i = indexOf(tail, OGG_CAPTURE, i + 1)) {
+                page = i;
+            }
+            if (page < 0 || page + 14 > tail.limit() || rate == 0) return 0;
+            long granule = tail.getLong(page + 6);
+            return granule > 0 ? (int) Math.min(Integer.MAX_VALUE, granule * 1000 / rate) : 0;
+        }
+    }
+
+    private static ByteBuffer readAt(SeekableByteChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(position);
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i + pattern.length <= buffer.limit(); i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer.get(i + j) != pattern[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
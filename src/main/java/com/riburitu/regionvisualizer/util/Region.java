@@ -1,29 +1,95 @@
 package com.riburitu.regionvisualizer.util;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.minecraft.ResourceLocationException;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.Level;
 
-public class Region {
-    private String name;
-    private BlockPos pos1;
-    private BlockPos pos2;
-    private String musicFile;
-    private boolean loopEnabled;
-    private boolean fadeEnabled;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Comparator;
+
+/**
+ * Región inmutable. Para modificar una región se crea una copia con los métodos {@code with*}
+ * y se entrega a {@link RegionManager}, así las instantáneas publicadas nunca cambian.
+ */
+public final class Region {
+    /**
+     * Orden de precedencia entre regiones solapadas: mayor prioridad primero, a igual prioridad
+     * la de menor volumen (la más interior) y, como último desempate, el nombre.
+     */
+    public static final Comparator<Region> PRECEDENCE = Comparator
+        .comparingInt(Region::getPriority).reversed()
+        .thenComparingLong(Region::getVolume)
+        .thenComparing(Region::getName);
+
+    private final int id;
+    private final String name;
+    private final ResourceKey<Level> dimension;
+    private final BlockPos pos1;
+    private final BlockPos pos2;
+    private final String musicFile;
+    private final boolean loopEnabled;
+    private final boolean fadeEnabled;
+    private final int priority;
+    // Límites normalizados, calculados una vez al crear la región.
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
+    private final long volume;
 
     public Region(String name, BlockPos pos1, BlockPos pos2, String musicFile, boolean loopEnabled, boolean fadeEnabled) {
+        this(name, Level.OVERWORLD, pos1, pos2, musicFile, loopEnabled, fadeEnabled);
+    }
+
+    public Region(String name, ResourceKey<Level> dimension, BlockPos pos1, BlockPos pos2, String musicFile, boolean loopEnabled, boolean fadeEnabled) {
+        this(name, dimension, pos1, pos2, musicFile, loopEnabled, fadeEnabled, 0);
+    }
+
+    public Region(String name, ResourceKey<Level> dimension, BlockPos pos1, BlockPos pos2, String musicFile, boolean loopEnabled, boolean fadeEnabled, int priority) {
+        this(0, name, dimension, pos1, pos2, musicFile, loopEnabled, fadeEnabled, priority);
+    }
+
+    private Region(int id, String name, ResourceKey<Level> dimension, BlockPos pos1, BlockPos pos2, String musicFile, boolean loopEnabled, boolean fadeEnabled, int priority) {
+        this.id = id;
         this.name = name;
-        this.pos1 = pos1;
-        this.pos2 = pos2;
+        this.dimension = dimension != null ? dimension : Level.OVERWORLD;
+        this.pos1 = pos1.immutable();
+        this.pos2 = pos2.immutable();
+        this.minX = Math.min(pos1.getX(), pos2.getX());
+        this.minY = Math.min(pos1.getY(), pos2.getY());
+        this.minZ = Math.min(pos1.getZ(), pos2.getZ());
+        this.maxX = Math.max(pos1.getX(), pos2.getX());
+        this.maxY = Math.max(pos1.getY(), pos2.getY());
+        this.maxZ = Math.max(pos1.getZ(), pos2.getZ());
+        this.volume = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
         this.musicFile = musicFile;
         this.loopEnabled = loopEnabled;
         this.fadeEnabled = fadeEnabled;
+        this.priority = priority;
+    }
+
+    /**
+     * Identificador numérico que asigna {@link RegionSnapshot} al publicar la región; se conserva
+     * al editarla y cambia al renombrarla. Vale 0 mientras la región no se haya publicado.
+     * No se guarda en disco.
+     */
+    public int getId() {
+        return id;
     }
 
     public String getName() {
         return name;
     }
 
+    public ResourceKey<Level> getDimension() {
+        return dimension;
+    }
+
     public BlockPos getPos1() {
         return pos1;
     }
@@ -32,6 +98,30 @@ public class Region {
         return pos2;
     }
 
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getMaxZ() {
+        return maxZ;
+    }
+
     public String getMusicFile() {
         return musicFile;
     }
@@ -44,45 +134,63 @@ public class Region {
         return fadeEnabled;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public int getPriority() {
+        return priority;
     }
 
-    public void setPos1(BlockPos pos1) {
-        this.pos1 = pos1;
+    public long getVolume() {
+        return volume;
     }
 
-    public void setPos2(BlockPos pos2) {
-        this.pos2 = pos2;
+    /**
+     * Indica si esta región gana frente a {@code other} cuando ambas contienen el mismo punto.
+     */
+    public boolean outranks(Region other) {
+        return other == null || PRECEDENCE.compare(this, other) < 0;
     }
 
-    public void setMusicFile(String musicFile) {
-        this.musicFile = musicFile;
+    public Region withName(String name) {
+        return new Region(id, name, dimension, pos1, pos2, musicFile, loopEnabled, fadeEnabled, priority);
+    }
+
+    public Region withBounds(ResourceKey<Level> dimension, BlockPos pos1, BlockPos pos2) {
+        return new Region(id, name, dimension, pos1, pos2, musicFile, loopEnabled, fadeEnabled, priority);
+    }
+
+    public Region withMusicFile(String musicFile) {
+        return new Region(id, name, dimension, pos1, pos2, musicFile, loopEnabled, fadeEnabled, priority);
+    }
+
+    public Region withPriority(int priority) {
+        return new Region(id, name, dimension, pos1, pos2, musicFile, loopEnabled, fadeEnabled, priority);
+    }
+
+    Region withId(int id) {
+        return new Region(id, name, dimension, pos1, pos2, musicFile, loopEnabled, fadeEnabled, priority);
     }
 
     public boolean contains(BlockPos pos) {
-        int minX = Math.min(pos1.getX(), pos2.getX());
-        int maxX = Math.max(pos1.getX(), pos2.getX());
-        int minY = Math.min(pos1.getY(), pos2.getY());
-        int maxY = Math.max(pos1.getY(), pos2.getY());
-        int minZ = Math.min(pos1.getZ(), pos2.getZ());
-        int maxZ = Math.max(pos1.getZ(), pos2.getZ());
-        return pos.getX() >= minX && pos.getX() <= maxX &&
-               pos.getY() >= minY && pos.getY() <= maxY &&
-               pos.getZ() >= minZ && pos.getZ() <= maxZ;
+        return contains(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return x >= minX && x <= maxX &&
+               y >= minY && y <= maxY &&
+               z >= minZ && z <= maxZ;
     }
 
     public BlockPos getCenter() {
         return new BlockPos(
-            (pos1.getX() + pos2.getX()) / 2,
-            (pos1.getY() + pos2.getY()) / 2,
-            (pos1.getZ() + pos2.getZ()) / 2
+            (minX + maxX) / 2,
+            (minY + maxY) / 2,
+            (minZ + maxZ) / 2
         );
     }
 
     public JsonObject toJson() {
         JsonObject obj = new JsonObject();
         obj.addProperty("name", name);
+        obj.addProperty("dimension", dimension.location().toString());
         JsonObject p1 = new JsonObject();
         p1.addProperty("x", pos1.getX());
         p1.addProperty("y", pos1.getY());
@@ -98,11 +206,18 @@ public class Region {
             obj.addProperty("loopEnabled", loopEnabled);
             obj.addProperty("fadeEnabled", fadeEnabled);
         }
+        if (priority != 0) {
+            obj.addProperty("priority", priority);
+        }
         return obj;
     }
 
     public static Region fromJson(JsonObject obj) {
         String name = obj.get("name").getAsString();
+        // Los archivos anteriores no guardaban la dimensión: todas eran del overworld.
+        ResourceKey<Level> dimension = obj.has("dimension")
+            ? ResourceKey.create(Registries.DIMENSION, new ResourceLocation(obj.get("dimension").getAsString()))
+            : Level.OVERWORLD;
         JsonObject p1 = obj.getAsJsonObject("pos1");
         BlockPos pos1 = new BlockPos(
             p1.get("x").getAsInt(),
@@ -118,6 +233,132 @@ public class Region {
         String musicFile = obj.has("musicFile") ? obj.get("musicFile").getAsString() : null;
         boolean loopEnabled = obj.has("loopEnabled") ? obj.get("loopEnabled").getAsBoolean() : false;
         boolean fadeEnabled = obj.has("fadeEnabled") ? obj.get("fadeEnabled").getAsBoolean() : false;
-        return new Region(name, pos1, pos2, musicFile, loopEnabled, fadeEnabled);
+        int priority = obj.has("priority") ? obj.get("priority").getAsInt() : 0;
+        return new Region(name, dimension, pos1, pos2, musicFile, loopEnabled, fadeEnabled, priority);
+    }
+    /**
+     * Lee una región directamente de los tokens, sin armar un {@link JsonObject}. Acepta lo
+     * mismo que {@link #fromJson(JsonObject)}. Si la entrada no es válida lanza
+     * IllegalArgumentException, pero siempre después de consumirla entera, así quien llama
+     * puede informar el error y seguir con la siguiente.
+     */
+    public static Region fromJson(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            throw new IllegalArgumentException("la entrada no es un objeto");
+        }
+
+        String name = null;
+        String dimensionId = null;
+        int[] pos1 = null;
+        int[] pos2 = null;
+        String musicFile = null;
+        boolean loopEnabled = false;
+        boolean fadeEnabled = false;
+        int priority = 0;
+        String error = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            try {
+                switch (field) {
+                    case "name" -> name = readString(in);
+                    case "dimension" -> dimensionId = readString(in);
+                    case "pos1" -> pos1 = readPos(in);
+                    case "pos2" -> pos2 = readPos(in);
+                    case "musicFile" -> musicFile = readString(in);
+                    case "loopEnabled" -> loopEnabled = readBoolean(in);
+                    case "fadeEnabled" -> fadeEnabled = readBoolean(in);
+                    case "priority" -> priority = readInt(in);
+                    default -> in.skipValue();
+                }
+            } catch (IllegalArgumentException e) {
+                // Se anota el primer error y se sigue leyendo para dejar el lector al final del objeto.
+                if (error == null) error = field + ": " + e.getMessage();
+            }
+        }
+        in.endObject();
+
+        if (error != null) throw new IllegalArgumentException(error);
+        if (name == null) throw new IllegalArgumentException("falta name");
+        if (pos1 == null || pos2 == null) throw new IllegalArgumentException("falta pos1 o pos2");
+        ResourceKey<Level> dimension = Level.OVERWORLD;
+        if (dimensionId != null) {
+            try {
+                dimension = ResourceKey.create(Registries.DIMENSION, new ResourceLocation(dimensionId));
+            } catch (ResourceLocationException e) {
+                throw new IllegalArgumentException("dimensión inválida: " + dimensionId);
+            }
+        }
+        return new Region(name, dimension, new BlockPos(pos1[0], pos1[1], pos1[2]), new BlockPos(pos2[0], pos2[1], pos2[2]),
+            musicFile, loopEnabled, fadeEnabled, priority);
+    }
+
+    // Los lectores consumen siempre el valor, aunque no tenga el tipo esperado.
+    private static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER && token != JsonToken.BOOLEAN) {
+            in.skipValue();
+            throw new IllegalArgumentException("se esperaba texto");
+        }
+        return token == JsonToken.BOOLEAN ? String.valueOf(in.nextBoolean()) : in.nextString();
+    }
+
+    private static int readInt(JsonReader in) throws IOException {
+        String raw = readString(in);
+        if (raw == null) throw new IllegalArgumentException("se esperaba un número");
+        try {
+            return Integer.parseInt(raw);
+        } catch (NumberFormatException e) {
+            try {
+                return new BigDecimal(raw).intValue();
+            } catch (NumberFormatException e2) {
+                throw new IllegalArgumentException("número inválido: " + raw);
+            }
+        }
+    }
+
+    private static boolean readBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.BOOLEAN) return in.nextBoolean();
+        return Boolean.parseBoolean(readString(in));
+    }
+
+    private static int[] readPos(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            throw new IllegalArgumentException("se esperaba un objeto {x, y, z}");
+        }
+        int[] pos = new int[3];
+        boolean[] seen = new boolean[3];
+        String error = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String axis = in.nextName();
+            int i = switch (axis) {
+                case "x" -> 0;
+                case "y" -> 1;
+                case "z" -> 2;
+                default -> -1;
+            };
+            if (i < 0) {
+                in.skipValue();
+                continue;
+            }
+            try {
+                pos[i] = readInt(in);
+                seen[i] = true;
+            } catch (IllegalArgumentException e) {
+                if (error == null) error = axis + ": " + e.getMessage();
+            }
+        }
+        in.endObject();
+        if (error != null) throw new IllegalArgumentException(error);
+        if (!seen[0] || !seen[1] || !seen[2]) throw new IllegalArgumentException("faltan coordenadas");
+        return pos;
     }
 }
\ No newline at end of file
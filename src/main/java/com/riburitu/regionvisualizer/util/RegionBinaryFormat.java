@@ -0,0 +1,206 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.Level;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Formato binario de regions.dat.
+ *
+ * <pre>
+ * int     magia "RGNV"
+ * byte    versión
+ * varint  cantidad de cadenas, y cada cadena (varint longitud + UTF-8): dimensiones y música
+ * varint  cantidad de regiones, y por cada una:
+ *           cadena   nombre
+ *           varint   índice de la dimensión en la tabla
+ *           zigzag   x, y, z de pos1
+ *           zigzag   x, y, z de pos2 menos pos1
+ *           varint   índice de la música + 1 (0 = sin música)
+ *           byte     banderas (1 = bucle, 2 = fade)
+ *           zigzag   prioridad
+ * int     CRC32 de todo lo anterior
+ * </pre>
+ *
+ * Los nombres de música y de dimensión se repiten mucho, por eso van una sola vez en la
+ * tabla. Las coordenadas en varint zig-zag ocupan 1-3 bytes en vez de 4, y pos2 se guarda
+ * relativa a pos1 porque las regiones suelen ser pequeñas.
+ */
+public final class RegionBinaryFormat {
+    private static final int MAGIC = 0x52474E56; // "RGNV"
+    private static final byte VERSION = 1;
+    private static final int FLAG_LOOP = 1;
+    private static final int FLAG_FADE = 2;
+
+    private RegionBinaryFormat() {
+    }
+
+    public static void write(OutputStream target, List<Region> regions) throws IOException {
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndex = new HashMap<>();
+        for (Region region : regions) {
+            intern(region.getDimension().location().toString(), strings, stringIndex);
+            if (region.getMusicFile() != null) {
+                intern(region.getMusicFile(), strings, stringIndex);
+            }
+        }
+
+        BufferedOutputStream buffered = new BufferedOutputStream(target, 64 * 1024);
+        CRC32 crc = new CRC32();
+        CheckedOutputStream out = new CheckedOutputStream(buffered, crc);
+
+        writeInt(out, MAGIC);
+        out.write(VERSION);
+
+        writeVarInt(out, strings.size());
+        for (String value : strings) {
+            writeString(out, value);
+        }
+
+        writeVarInt(out, regions.size());
+        for (Region region : regions) {
+            BlockPos pos1 = region.getPos1();
+            BlockPos pos2 = region.getPos2();
+            writeString(out, region.getName());
+            writeVarInt(out, stringIndex.get(region.getDimension().location().toString()));
+            writeZigZag(out, pos1.getX());
+            writeZigZag(out, pos1.getY());
+            writeZigZag(out, pos1.getZ());
+            writeZigZag(out, pos2.getX() - pos1.getX());
+            writeZigZag(out, pos2.getY() - pos1.getY());
+            writeZigZag(out, pos2.getZ() - pos1.getZ());
+            writeVarInt(out, region.getMusicFile() != null ? stringIndex.get(region.getMusicFile()) + 1 : 0);
+            out.write((region.isLoopEnabled() ? FLAG_LOOP : 0) | (region.isFadeEnabled() ? FLAG_FADE : 0));
+            writeZigZag(out, region.getPriority());
+        }
+
+        // El CRC va fuera del flujo con checksum.
+        writeInt(buffered, (int) crc.getValue());
+        buffered.flush();
+    }
+
+    /**
+     * Lee el archivo completo y entrega cada región en orden. Lanza IOException si la magia,
+     * la versión o el CRC no coinciden, antes de entregar ninguna región.
+     */
+    public static int read(byte[] data, Consumer<Region> sink) throws IOException {
+        if (data.length < 9) throw new IOException("archivo demasiado corto (" + data.length + " bytes)");
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int storedCrc = buffer.getInt(data.length - 4);
+        if ((int) crc.getValue() != storedCrc) throw new IOException("CRC incorrecto");
+
+        buffer.limit(data.length - 4);
+        try {
+            if (buffer.getInt() != MAGIC) throw new IOException("no es un archivo de regiones");
+            byte version = buffer.get();
+            if (version != VERSION) throw new IOException("versión no soportada: " + version);
+
+            int stringCount = readVarInt(buffer);
+            String[] strings = new String[stringCount];
+            List<ResourceKey<Level>> dimensions = new ArrayList<>(stringCount);
+            for (int i = 0; i < stringCount; i++) {
+                strings[i] = readString(buffer);
+                dimensions.add(null);
+            }
+
+            int regionCount = readVarInt(buffer);
+            for (int i = 0; i < regionCount; i++) {
+                String name = readString(buffer);
+                int dimensionIndex = readVarInt(buffer);
+                ResourceKey<Level> dimension = dimensions.get(dimensionIndex);
+                if (dimension == null) {
+                    dimension = ResourceKey.create(Registries.DIMENSION, new ResourceLocation(strings[dimensionIndex]));
+                    dimensions.set(dimensionIndex, dimension);
+                }
+                int x1 = readZigZag(buffer);
+                int y1 = readZigZag(buffer);
+                int z1 = readZigZag(buffer);
+                BlockPos pos1 = new BlockPos(x1, y1, z1);
+                BlockPos pos2 = new BlockPos(x1 + readZigZag(buffer), y1 + readZigZag(buffer), z1 + readZigZag(buffer));
+                int musicIndex = readVarInt(buffer);
+                String musicFile = musicIndex > 0 ? strings[musicIndex - 1] : null;
+                int flags = buffer.get();
+                int priority = readZigZag(buffer);
+                sink.accept(new Region(name, dimension, pos1, pos2, musicFile,
+                    (flags & FLAG_LOOP) != 0, (flags & FLAG_FADE) != 0, priority));
+            }
+            return regionCount;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("archivo de regiones truncado o inconsistente", e);
+        }
+    }
+
+    private static void intern(String value, List<String> strings, Map<String, Integer> index) {
+        if (!index.containsKey(value)) {
+            index.put(value, strings.size());
+            strings.add(value);
+        }
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static void writeZigZag(OutputStream out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("varint demasiado largo");
+    }
+
+    static int readZigZag(ByteBuffer in) throws IOException {
+        int raw = readVarInt(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0 || length > in.remaining()) throw new IOException("cadena fuera de rango");
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
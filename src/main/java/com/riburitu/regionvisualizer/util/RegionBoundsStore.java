@@ -0,0 +1,118 @@
+package com.riburitu.regionvisualizer.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Límites de un grupo de regiones guardados en arreglos paralelos de enteros. La búsqueda
+ * recorre memoria contigua en vez de seguir punteros a {@link Region} y {@code BlockPos},
+ * y el bucle de contención casi no tiene saltos, lo que facilita que el JIT lo optimice.
+ *
+ * Las regiones se mantienen ordenadas por {@link Region#PRECEDENCE}, así la primera que
+ * contiene un punto es siempre la ganadora y la búsqueda puede cortar ahí.
+ *
+ * Es inmutable: {@link #with(Region)} y {@link #without(Region)} devuelven una copia, así
+ * puede compartirse entre instantáneas de {@link RegionSnapshot}.
+ */
+public final class RegionBoundsStore {
+    public static final RegionBoundsStore EMPTY = new RegionBoundsStore(new Region[0]);
+
+    private final Region[] regions;
+    private final int[] minX, minY, minZ;
+    private final int[] maxX, maxY, maxZ;
+
+    private RegionBoundsStore(Region[] regions) {
+        int size = regions.length;
+        this.regions = regions;
+        this.minX = new int[size];
+        this.minY = new int[size];
+        this.minZ = new int[size];
+        this.maxX = new int[size];
+        this.maxY = new int[size];
+        this.maxZ = new int[size];
+        for (int i = 0; i < size; i++) {
+            Region region = regions[i];
+            minX[i] = region.getMinX();
+            minY[i] = region.getMinY();
+            minZ[i] = region.getMinZ();
+            maxX[i] = region.getMaxX();
+            maxY[i] = region.getMaxY();
+            maxZ[i] = region.getMaxZ();
+        }
+    }
+
+    public static RegionBoundsStore of(List<Region> regions) {
+        if (regions.isEmpty()) return EMPTY;
+        Region[] sorted = regions.toArray(new Region[0]);
+        Arrays.sort(sorted, Region.PRECEDENCE);
+        return new RegionBoundsStore(sorted);
+    }
+
+    public RegionBoundsStore with(Region region) {
+        int index = Arrays.binarySearch(regions, region, Region.PRECEDENCE);
+        if (index < 0) index = -index - 1;
+        Region[] updated = new Region[regions.length + 1];
+        System.arraycopy(regions, 0, updated, 0, index);
+        updated[index] = region;
+        System.arraycopy(regions, index, updated, index + 1, regions.length - index);
+        return new RegionBoundsStore(updated);
+    }
+
+    /**
+     * Devuelve una copia sin la región (comparada por identidad), o esta misma si no estaba.
+     */
+    public RegionBoundsStore without(Region region) {
+        int index = indexOf(region);
+        if (index < 0) return this;
+        if (regions.length == 1) return EMPTY;
+
+        Region[] updated = new Region[regions.length - 1];
+        System.arraycopy(regions, 0, updated, 0, index);
+        System.arraycopy(regions, index + 1, updated, index, regions.length - index - 1);
+        return new RegionBoundsStore(updated);
+    }
+
+    public int size() {
+        return regions.length;
+    }
+
+    public boolean isEmpty() {
+        return regions.length == 0;
+    }
+
+    public Region get(int index) {
+        return regions[index];
+    }
+
+    public int indexOf(Region region) {
+        for (int i = 0; i < regions.length; i++) {
+            if (regions[i] == region) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Índice de la primera región que contiene el punto a partir de {@code from}, o -1.
+     */
+    public int indexOf(int x, int y, int z, int from) {
+        int[] minX = this.minX, minY = this.minY, minZ = this.minZ;
+        int[] maxX = this.maxX, maxY = this.maxY, maxZ = this.maxZ;
+        for (int i = from; i < minX.length; i++) {
+            // Todas las diferencias son >= 0 solo si el punto está dentro; el OR conserva
+            // el bit de signo de cualquiera negativa. Las coordenadas del mundo (±30M) no desbordan.
+            int outside = (x - minX[i]) | (maxX[i] - x)
+                        | (y - minY[i]) | (maxY[i] - y)
+                        | (z - minZ[i]) | (maxZ[i] - z);
+            if (outside >= 0) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * La región de mayor precedencia que contiene el punto, o null.
+     */
+    public Region find(int x, int y, int z) {
+        int index = indexOf(x, y, z, 0);
+        return index >= 0 ? regions[index] : null;
+    }
+}
@@ -0,0 +1,384 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Jerarquía de cajas envolventes (BVH) sobre las regiones de una dimensión. A diferencia de
+ * la rejilla por chunks, cada región aparece una sola vez sin importar su tamaño, y las zonas
+ * vacías no ocupan memoria: conviene con miles de habitaciones pequeñas mezcladas con
+ * regiones que abarcan cientos de chunks.
+ *
+ * El árbol se construye de una vez (partiendo por la mediana del eje más largo) y se guarda
+ * en arreglos planos. Las ediciones posteriores son incrementales: las inserciones van a una
+ * lista pendiente y las bajas se marcan aparte; cuando se acumulan demasiadas, el árbol se
+ * reconstruye. El árbol nunca se modifica, así que las copias lo comparten.
+ *
+ * Cada nodo guarda además la prioridad máxima y el volumen mínimo de su subárbol: la búsqueda
+ * puntual descarta las ramas que no pueden superar a la mejor región encontrada hasta el momento.
+ */
+public class RegionBvhIndex implements RegionIndex {
+    private static final int LEAF_SIZE = 4;
+    // Cambios acumulados permitidos antes de reconstruir: el mayor entre esto y un cuarto del árbol.
+    private static final int MIN_REBUILD_THRESHOLD = 32;
+    private static final int MAX_DEPTH = 64;
+
+    private final Tree tree;
+    private RegionBoundsStore pending;
+    private final Set<Region> removed;
+
+    public RegionBvhIndex() {
+        this(Tree.EMPTY, RegionBoundsStore.EMPTY, newIdentitySet());
+    }
+
+    private RegionBvhIndex(Tree tree, RegionBoundsStore pending, Set<Region> removed) {
+        this.tree = tree;
+        this.pending = pending;
+        this.removed = removed;
+    }
+
+    public static RegionBvhIndex build(List<Region> regions) {
+        return new RegionBvhIndex(Tree.build(regions), RegionBoundsStore.EMPTY, newIdentitySet());
+    }
+
+    private static Set<Region> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    @Override
+    public RegionBvhIndex copy() {
+        Set<Region> removedCopy = newIdentitySet();
+        removedCopy.addAll(removed);
+        return new RegionBvhIndex(tree, pending, removedCopy);
+    }
+
+    @Override
+    public void insert(Region region) {
+        if (region == null) return;
+        // Si estaba marcada como retirada del árbol, basta con desmarcarla.
+        if (!removed.remove(region)) {
+            pending = pending.with(region);
+        }
+    }
+
+    @Override
+    public boolean remove(Region region) {
+        RegionBoundsStore updated = pending.without(region);
+        if (updated != pending) {
+            pending = updated;
+            return true;
+        }
+        if (removed.contains(region) || !tree.contains(region)) return false;
+        removed.add(region);
+        return true;
+    }
+
+    /**
+     * Indica si los cambios incrementales ya pesan lo suficiente como para reconstruir.
+     */
+    public boolean needsRebuild() {
+        int threshold = Math.max(MIN_REBUILD_THRESHOLD, tree.items.length / 4);
+        return pending.size() + removed.size() > threshold;
+    }
+
+    /**
+     * Devuelve un índice nuevo con el árbol reconstruido a partir de las regiones vivas.
+     */
+    public RegionBvhIndex rebuilt() {
+        return build(liveRegions());
+    }
+
+    private List<Region> liveRegions() {
+        List<Region> live = new ArrayList<>(size());
+        for (Region region : tree.items) {
+            if (!removed.contains(region)) live.add(region);
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            live.add(pending.get(i));
+        }
+        return live;
+    }
+
+    @Override
+    public Optional<Region> find(BlockPos pos) {
+        int x = pos.getX(), y = pos.getY(), z = pos.getZ();
+        Region found = tree.find(x, y, z, removed);
+        Region pendingFound = pending.find(x, y, z);
+        if (pendingFound != null && pendingFound.outranks(found)) {
+            found = pendingFound;
+        }
+        return Optional.ofNullable(found);
+    }
+
+    @Override
+    public RegionLookup lookup(BlockPos pos) {
+        RegionLookup.Builder lookup = new RegionLookup.Builder(pos);
+        for (Region candidate : query(RegionLookup.chunkColumn(pos))) {
+            lookup.accept(candidate);
+        }
+        return lookup.build();
+    }
+
+    @Override
+    public List<Region> query(BoundingBox box) {
+        List<Region> result = new ArrayList<>();
+        tree.query(box, removed, result);
+        for (int i = 0; i < pending.size(); i++) {
+            Region region = pending.get(i);
+            if (RegionSpatialIndex.intersects(region, box)) result.add(region);
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return tree.items.length - removed.size() + pending.size();
+    }
+
+    @Override
+    public String describe() {
+        return "bvh: " + tree.nodeCount + " nodos, profundidad " + tree.depth
+            + ", " + pending.size() + " pendientes, " + removed.size() + " retiradas";
+    }
+
+    /**
+     * Árbol plano e inmutable. Nodo {@code n}: límites en {@code bounds[6n..6n+5]}; si es hoja,
+     * {@code left[n] == -1} y sus regiones son {@code items[start[n] .. start[n]+count[n])},
+     * ordenadas por {@link Region#PRECEDENCE}.
+     */
+    private static final class Tree {
+        static final Tree EMPTY = new Tree(new Region[0], new int[0], new int[0], new int[0], new int[0], new int[0],
+            new int[0], new long[0], 0, 0);
+
+        final Region[] items;
+        final int[] bounds;
+        final int[] left;
+        final int[] right;
+        final int[] start;
+        final int[] count;
+        final int[] maxPriority;
+        final long[] minVolume;
+        final int nodeCount;
+        final int depth;
+
+        private Tree(Region[] items, int[] bounds, int[] left, int[] right, int[] start, int[] count,
+                     int[] maxPriority, long[] minVolume, int nodeCount, int depth) {
+            this.items = items;
+            this.bounds = bounds;
+            this.left = left;
+            this.right = right;
+            this.start = start;
+            this.count = count;
+            this.maxPriority = maxPriority;
+            this.minVolume = minVolume;
+            this.nodeCount = nodeCount;
+            this.depth = depth;
+        }
+
+        static Tree build(List<Region> regions) {
+            if (regions.isEmpty()) return EMPTY;
+            Region[] items = regions.toArray(new Region[0]);
+            // Un árbol binario con hojas de LEAF_SIZE tiene menos de 2n/LEAF_SIZE + 1 nodos; se reserva 2n por simplicidad.
+            int capacity = Math.max(1, 2 * items.length);
+            TreeBuilder builder = new TreeBuilder(items, capacity);
+            builder.buildNode(0, items.length, 1);
+            return new Tree(items,
+                Arrays.copyOf(builder.bounds, builder.nodeCount * 6),
+                Arrays.copyOf(builder.left, builder.nodeCount),
+                Arrays.copyOf(builder.right, builder.nodeCount),
+                Arrays.copyOf(builder.start, builder.nodeCount),
+                Arrays.copyOf(builder.count, builder.nodeCount),
+                Arrays.copyOf(builder.maxPriority, builder.nodeCount),
+                Arrays.copyOf(builder.minVolume, builder.nodeCount),
+                builder.nodeCount, builder.depth);
+        }
+
+        /**
+         * La región de mayor precedencia que contiene el punto, sin pasar por las retiradas.
+         */
+        Region find(int x, int y, int z, Set<Region> removed) {
+            if (nodeCount == 0) return null;
+            Region best = null;
+            int[] stack = new int[MAX_DEPTH];
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                int b = node * 6;
+                int outside = (x - bounds[b]) | (bounds[b + 3] - x)
+                            | (y - bounds[b + 1]) | (bounds[b + 4] - y)
+                            | (z - bounds[b + 2]) | (bounds[b + 5] - z);
+                if (outside < 0) continue;
+                if (best != null && cannotBeat(node, best)) continue;
+                if (left[node] < 0) {
+                    // La hoja está ordenada por precedencia: la primera que contiene el punto es su mejor candidata.
+                    for (int i = start[node], end = i + count[node]; i < end; i++) {
+                        Region region = items[i];
+                        if (region.contains(x, y, z) && (removed.isEmpty() || !removed.contains(region))) {
+                            if (region.outranks(best)) best = region;
+                            break;
+                        }
+                    }
+                } else {
+                    // Se apila primero el derecho para visitar antes el izquierdo (orden estable).
+                    stack[top++] = right[node];
+                    stack[top++] = left[node];
+                }
+            }
+            return best;
+        }
+
+        // Ninguna región del subárbol tiene más prioridad, ni la misma con menos volumen.
+        private boolean cannotBeat(int node, Region best) {
+            return maxPriority[node] < best.getPriority()
+                || (maxPriority[node] == best.getPriority() && minVolume[node] > best.getVolume());
+        }
+
+        void query(BoundingBox box, Set<Region> removed, List<Region> result) {
+            if (nodeCount == 0) return;
+            int[] stack = new int[MAX_DEPTH];
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                int b = node * 6;
+                if (bounds[b + 3] < box.minX() || bounds[b] > box.maxX()
+                    || bounds[b + 4] < box.minY() || bounds[b + 1] > box.maxY()
+                    || bounds[b + 5] < box.minZ() || bounds[b + 2] > box.maxZ()) {
+                    continue;
+                }
+                if (left[node] < 0) {
+                    for (int i = start[node], end = i + count[node]; i < end; i++) {
+                        Region region = items[i];
+                        if (RegionSpatialIndex.intersects(region, box) && !removed.contains(region)) {
+                            result.add(region);
+                        }
+                    }
+                } else {
+                    stack[top++] = right[node];
+                    stack[top++] = left[node];
+                }
+            }
+        }
+
+        boolean contains(Region region) {
+            if (nodeCount == 0) return false;
+            int[] stack = new int[MAX_DEPTH];
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                int b = node * 6;
+                // Solo los nodos que envuelven por completo a la región pueden contenerla.
+                if (region.getMinX() < bounds[b] || region.getMaxX() > bounds[b + 3]
+                    || region.getMinY() < bounds[b + 1] || region.getMaxY() > bounds[b + 4]
+                    || region.getMinZ() < bounds[b + 2] || region.getMaxZ() > bounds[b + 5]) {
+                    continue;
+                }
+                if (left[node] < 0) {
+                    for (int i = start[node], end = i + count[node]; i < end; i++) {
+                        if (items[i] == region) return true;
+                    }
+                } else {
+                    stack[top++] = right[node];
+                    stack[top++] = left[node];
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class TreeBuilder {
+        private final Region[] items;
+        private final int[] bounds;
+        private final int[] left;
+        private final int[] right;
+        private final int[] start;
+        private final int[] count;
+        private final int[] maxPriority;
+        private final long[] minVolume;
+        private int nodeCount;
+        private int depth;
+
+        TreeBuilder(Region[] items, int capacity) {
+            this.items = items;
+            this.bounds = new int[capacity * 6];
+            this.left = new int[capacity];
+            this.right = new int[capacity];
+            this.start = new int[capacity];
+            this.count = new int[capacity];
+            this.maxPriority = new int[capacity];
+            this.minVolume = new long[capacity];
+        }
+
+        int buildNode(int from, int to, int level) {
+            int node = nodeCount++;
+            depth = Math.max(depth, level);
+
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            int topPriority = Integer.MIN_VALUE;
+            long smallestVolume = Long.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                Region region = items[i];
+                topPriority = Math.max(topPriority, region.getPriority());
+                smallestVolume = Math.min(smallestVolume, region.getVolume());
+                minX = Math.min(minX, region.getMinX());
+                minY = Math.min(minY, region.getMinY());
+                minZ = Math.min(minZ, region.getMinZ());
+                maxX = Math.max(maxX, region.getMaxX());
+                maxY = Math.max(maxY, region.getMaxY());
+                maxZ = Math.max(maxZ, region.getMaxZ());
+            }
+            int b = node * 6;
+            bounds[b] = minX;
+            bounds[b + 1] = minY;
+            bounds[b + 2] = minZ;
+            bounds[b + 3] = maxX;
+            bounds[b + 4] = maxY;
+            bounds[b + 5] = maxZ;
+            maxPriority[node] = topPriority;
+            minVolume[node] = smallestVolume;
+
+            // Hoja si quedan pocas regiones o si el árbol llegó al límite de la pila de búsqueda.
+            if (to - from <= LEAF_SIZE || level >= MAX_DEPTH - 1) {
+                Arrays.sort(items, from, to, Region.PRECEDENCE);
+                left[node] = -1;
+                right[node] = -1;
+                start[node] = from;
+                count[node] = to - from;
+                return node;
+            }
+
+            // Partir por la mediana de los centros sobre el eje más largo.
+            long spanX = (long) maxX - minX;
+            long spanY = (long) maxY - minY;
+            long spanZ = (long) maxZ - minZ;
+            Comparator<Region> byCenter;
+            if (spanX >= spanY && spanX >= spanZ) {
+                byCenter = Comparator.comparingLong(r -> (long) r.getMinX() + r.getMaxX());
+            } else if (spanY >= spanZ) {
+                byCenter = Comparator.comparingLong(r -> (long) r.getMinY() + r.getMaxY());
+            } else {
+                byCenter = Comparator.comparingLong(r -> (long) r.getMinZ() + r.getMaxZ());
+            }
+            Arrays.sort(items, from, to, byCenter);
+            int mid = (from + to) >>> 1;
+
+            left[node] = buildNode(from, mid, level + 1);
+            right[node] = buildNode(mid, to, level + 1);
+            start[node] = from;
+            count[node] = to - from;
+            return node;
+        }
+    }
+}
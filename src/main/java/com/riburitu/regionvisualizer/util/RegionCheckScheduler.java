@@ -0,0 +1,84 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Reparte la revisión de regiones de todos los jugadores a lo largo de una ventana de ticks.
+ * Con N jugadores y una ventana de W ticks se revisan unos N/W por tick, en rotación, así
+ * cada jugador se revisa una vez por ventana y los que entraron en el mismo tick no se
+ * agrupan en ráfagas.
+ *
+ * Cada tick tiene además un presupuesto de tiempo: si se agota, lo que falta se arrastra
+ * al siguiente tick en lugar de alargar este.
+ */
+public class RegionCheckScheduler {
+    private final Consumer<ServerPlayer> check;
+    // Jugadores en orden de rotación. Se guardan por UUID porque al reaparecer el ServerPlayer cambia.
+    private final Deque<UUID> queue = new ArrayDeque<>();
+    private int windowTicks;
+    private long budgetNanos;
+    // Revisiones pendientes acumuladas (fraccionarias) para este tick y las arrastradas de los anteriores.
+    private double due;
+
+    public RegionCheckScheduler(Consumer<ServerPlayer> check, int windowTicks, long budgetMicros) {
+        this.check = check;
+        configure(windowTicks, budgetMicros);
+    }
+
+    public void configure(int windowTicks, long budgetMicros) {
+        this.windowTicks = Math.max(1, windowTicks);
+        this.budgetNanos = Math.max(1, budgetMicros) * 1000L;
+    }
+
+    public void add(ServerPlayer player) {
+        UUID id = player.getUUID();
+        if (!queue.contains(id)) {
+            // Al frente: un jugador recién llegado se revisa en el próximo tick.
+            queue.addFirst(id);
+        }
+    }
+
+    public void remove(ServerPlayer player) {
+        queue.remove(player.getUUID());
+    }
+
+    public void clear() {
+        queue.clear();
+        due = 0;
+    }
+
+    public void tick(MinecraftServer server) {
+        int players = queue.size();
+        if (players == 0) {
+            due = 0;
+            return;
+        }
+
+        // Lo arrastrado nunca supera una vuelta completa: más no aporta nada.
+        due = Math.min(due + (double) players / windowTicks, players);
+
+        long deadline = System.nanoTime() + budgetNanos;
+        while (due >= 1 && !queue.isEmpty()) {
+            UUID id = queue.pollFirst();
+            ServerPlayer player = server.getPlayerList().getPlayer(id);
+            if (player == null) {
+                // Se desconectó sin pasar por remove(): se descarta sin gastar una revisión.
+                continue;
+            }
+            queue.addLast(id);
+            due--;
+            check.accept(player);
+            if (System.nanoTime() >= deadline) break;
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,448 @@
+package com.riburitu.regionvisualizer.util;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Importación y exportación de regiones en CSV, JSON (un array, como el antiguo regions.json)
+ * o JSON Lines (un objeto por línea). Los archivos viven en {@code regionvisualizer/import} y
+ * {@code regionvisualizer/export} dentro del mundo.
+ *
+ * CSV y JSON Lines se leen por bloques de líneas que se procesan en paralelo; un array JSON
+ * solo se puede recorrer en orden, así que se lee en un solo hilo con el lector por tokens.
+ * Cada región se valida (nombre usable en comandos, coordenadas dentro del mundo) y los
+ * errores se informan por línea o entrada.
+ */
+public final class RegionExchange {
+    public static final String IMPORT_FOLDER = "import";
+    public static final String EXPORT_FOLDER = "export";
+    private static final String FOLDER_NAME = "regionvisualizer";
+    private static final int CHUNK_LINES = 2000;
+    private static final int MAX_REPORTED_ERRORS = 10;
+    private static final int MAX_NAME_LENGTH = 64;
+    private static final String[] CSV_COLUMNS = {
+        "name", "dimension", "x1", "y1", "z1", "x2", "y2", "z2", "musicFile", "loopEnabled", "fadeEnabled", "priority"
+    };
+
+    public enum Format {
+        CSV, JSON, JSON_LINES;
+
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) return CSV;
+            if (name.endsWith(".jsonl")) return JSON_LINES;
+            if (name.endsWith(".json")) return JSON;
+            return null;
+        }
+    }
+
+    /**
+     * Regiones válidas leídas de un archivo, en orden, y lo que se descartó.
+     */
+    public static final class ParseResult {
+        private final List<Region> regions = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private int invalid;
+        private int duplicates;
+
+        public List<Region> getRegions() {
+            return regions;
+        }
+
+        /**
+         * Los primeros errores encontrados, para mostrarlos; el total está en {@link #getInvalid()}.
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public int getInvalid() {
+            return invalid;
+        }
+
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        private void error(String message) {
+            invalid++;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add(message);
+        }
+    }
+
+    private RegionExchange() {
+    }
+
+    /**
+     * Archivo dentro de la carpeta de importación o exportación del mundo, o null si el nombre
+     * intenta salir de ella.
+     */
+    public static Path resolve(MinecraftServer server, String folder, String fileName) {
+        Path base = server.getWorldPath(LevelResource.ROOT).resolve(FOLDER_NAME).resolve(folder).normalize();
+        Path file = base.resolve(fileName).normalize();
+        return file.startsWith(base) && !file.equals(base) ? file : null;
+    }
+
+    public static List<String> listImportFiles(MinecraftServer server) {
+        Path base = server.getWorldPath(LevelResource.ROOT).resolve(FOLDER_NAME).resolve(IMPORT_FOLDER);
+        List<String> names = new ArrayList<>();
+        if (!Files.isDirectory(base)) return names;
+        try (var stream = Files.list(base)) {
+            stream.filter(path -> Format.of(path) != null).forEach(path -> names.add(path.getFileName().toString()));
+        } catch (IOException e) {
+            System.err.println("[RegionVisualizer] Error listando " + base + ": " + e.getMessage());
+        }
+        return names;
+    }
+
+    /**
+     * Lee y valida el archivo. Descarta los nombres repetidos dentro del archivo (gana el primero);
+     * los que chocan con regiones existentes los decide quien aplica la importación.
+     */
+    public static ParseResult parse(Path file, Format format) throws IOException {
+        ParseResult result = new ParseResult();
+        List<Region> parsed = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        if (format == Format.JSON) {
+            parseJsonArray(file, parsed, errors);
+        } else {
+            parseLinesInParallel(file, format, parsed, errors);
+        }
+
+        for (String error : errors) {
+            result.error(error);
+        }
+        Set<String> seen = new HashSet<>();
+        for (Region region : parsed) {
+            if (!seen.add(RegionSnapshot.normalizeName(region.getName()))) {
+                result.duplicates++;
+                if (result.errors.size() < MAX_REPORTED_ERRORS) result.errors.add("nombre repetido en el archivo: " + region.getName());
+                continue;
+            }
+            result.regions.add(region);
+        }
+        return result;
+    }
+
+    private static void parseJsonArray(Path file, List<Region> parsed, List<String> errors) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonReader in = new JsonReader(reader);
+            in.setLenient(true);
+            if (in.peek() != JsonToken.BEGIN_ARRAY) throw new IOException("el archivo no es un array JSON");
+            in.beginArray();
+            int entry = 0;
+            while (in.hasNext()) {
+                try {
+                    Region region = Region.fromJson(in);
+                    String error = validate(region);
+                    if (error == null) {
+                        parsed.add(region);
+                    } else {
+                        errors.add("entrada " + entry + ": " + error);
+                    }
+                } catch (IllegalArgumentException e) {
+                    errors.add("entrada " + entry + ": " + e.getMessage());
+                }
+                entry++;
+            }
+            in.endArray();
+        }
+    }
+
+    // Lee el archivo por bloques de líneas y reparte cada bloque a un hilo del grupo. Los
+    // resultados se juntan en el orden del archivo.
+    private static void parseLinesInParallel(Path file, Format format, List<Region> parsed, List<String> errors) throws IOException {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "RegionVisualizer-Import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Integer> columns = null;
+            int lineNumber = 0;
+            if (format == Format.CSV) {
+                String header;
+                do {
+                    header = reader.readLine();
+                    lineNumber++;
+                } while (header != null && header.isBlank());
+                if (header == null) return;
+                columns = parseHeader(header);
+            }
+
+            List<Future<ChunkResult>> futures = new ArrayList<>();
+            List<String> chunk = new ArrayList<>(CHUNK_LINES);
+            int chunkStart = lineNumber + 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                chunk.add(line);
+                if (chunk.size() == CHUNK_LINES) {
+                    futures.add(submitChunk(pool, format, columns, chunk, chunkStart));
+                    chunk = new ArrayList<>(CHUNK_LINES);
+                    chunkStart = lineNumber + 1;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                futures.add(submitChunk(pool, format, columns, chunk, chunkStart));
+            }
+
+            for (Future<ChunkResult> future : futures) {
+                ChunkResult result = future.get();
+                parsed.addAll(result.regions);
+                errors.addAll(result.errors);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("importación interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("error procesando el archivo: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private record ChunkResult(List<Region> regions, List<String> errors) {
+    }
+
+    private static Future<ChunkResult> submitChunk(ExecutorService pool, Format format, Map<String, Integer> columns,
+                                                   List<String> lines, int firstLine) {
+        return pool.submit(() -> {
+            List<Region> regions = new ArrayList<>(lines.size());
+            List<String> errors = new ArrayList<>();
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.isBlank()) continue;
+                try {
+                    Region region = format == Format.CSV
+                        ? fromCsv(splitCsv(line), columns)
+                        : Region.fromJson(new JsonReader(new java.io.StringReader(line)));
+                    String error = validate(region);
+                    if (error == null) {
+                        regions.add(region);
+                    } else {
+                        errors.add("línea " + (firstLine + i) + ": " + error);
+                    }
+                } catch (IllegalArgumentException | IllegalStateException | IOException e) {
+                    errors.add("línea " + (firstLine + i) + ": " + e.getMessage());
+                }
+            }
+            return new ChunkResult(regions, errors);
+        });
+    }
+
+    private static Map<String, Integer> parseHeader(String header) throws IOException {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsv(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim(), i);
+        }
+        for (String required : new String[] {"name", "x1", "y1", "z1", "x2", "y2", "z2"}) {
+            if (!columns.containsKey(required)) throw new IOException("falta la columna " + required + " en la cabecera");
+        }
+        return columns;
+    }
+
+    private static Region fromCsv(List<String> fields, Map<String, Integer> columns) {
+        String name = field(fields, columns, "name");
+        if (name == null || name.isEmpty()) throw new IllegalArgumentException("falta name");
+        String dimensionId = field(fields, columns, "dimension");
+        ResourceKey<Level> dimension = dimensionId == null || dimensionId.isEmpty()
+            ? Level.OVERWORLD
+            : ResourceKey.create(Registries.DIMENSION, parseLocation(dimensionId));
+        BlockPos pos1 = new BlockPos(intField(fields, columns, "x1"), intField(fields, columns, "y1"), intField(fields, columns, "z1"));
+        BlockPos pos2 = new BlockPos(intField(fields, columns, "x2"), intField(fields, columns, "y2"), intField(fields, columns, "z2"));
+        String musicFile = field(fields, columns, "musicFile");
+        if (musicFile != null && musicFile.isEmpty()) musicFile = null;
+        String priority = field(fields, columns, "priority");
+        return new Region(name, dimension, pos1, pos2, musicFile,
+            Boolean.parseBoolean(field(fields, columns, "loopEnabled")),
+            Boolean.parseBoolean(field(fields, columns, "fadeEnabled")),
+            priority == null || priority.isEmpty() ? 0 : parseInt(priority, "priority"));
+    }
+
+    private static ResourceLocation parseLocation(String id) {
+        ResourceLocation location = ResourceLocation.tryParse(id);
+        if (location == null) throw new IllegalArgumentException("dimensión inválida: " + id);
+        return location;
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index != null && index < fields.size() ? fields.get(index).trim() : null;
+    }
+
+    private static int intField(List<String> fields, Map<String, Integer> columns, String column) {
+        String value = field(fields, columns, column);
+        if (value == null || value.isEmpty()) throw new IllegalArgumentException("falta " + column);
+        return parseInt(value, column);
+    }
+
+    private static int parseInt(String value, String column) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " no es un número: " + value);
+        }
+    }
+
+    /**
+     * Separa una línea CSV por comas, con campos entre comillas dobles ("" es una comilla).
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    /**
+     * Motivo por el que la región no se puede importar, o null si es válida.
+     */
+    static String validate(Region region) {
+        String name = region.getName();
+        if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) return "nombre vacío o de más de " + MAX_NAME_LENGTH + " caracteres: " + name;
+        for (int i = 0; i < name.length(); i++) {
+            // Mismo criterio que los argumentos de /region: si no, la región no se podría nombrar en un comando.
+            if (!com.mojang.brigadier.StringReader.isAllowedInUnquotedString(name.charAt(i))) {
+                return "nombre con caracteres no permitidos: " + name;
+            }
+        }
+        if (!Level.isInSpawnableBounds(region.getPos1()) || !Level.isInSpawnableBounds(region.getPos2())) {
+            return "coordenadas fuera del mundo: " + name;
+        }
+        return null;
+    }
+
+    /**
+     * Escribe todas las regiones (también las de fragmentos sin cargar) en el archivo, una por
+     * una, sin armar el documento entero en memoria. Devuelve cuántas se escribieron.
+     */
+    public static int export(Path file, Format format, RegionManager regionManager) throws IOException {
+        Files.createDirectories(file.getParent());
+        int[] count = new int[1];
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            switch (format) {
+                case CSV -> {
+                    writer.write(String.join(",", CSV_COLUMNS));
+                    writer.write('\n');
+                    forEach(regionManager, region -> {
+                        writer.write(toCsv(region));
+                        writer.write('\n');
+                        count[0]++;
+                    });
+                }
+                case JSON_LINES -> forEach(regionManager, region -> {
+                    writer.write(region.toJson().toString());
+                    writer.write('\n');
+                    count[0]++;
+                });
+                case JSON -> {
+                    Gson gson = new Gson();
+                    JsonWriter json = new JsonWriter(writer);
+                    json.setIndent("  ");
+                    json.beginArray();
+                    forEach(regionManager, region -> {
+                        gson.toJson(region.toJson(), json);
+                        count[0]++;
+                    });
+                    json.endArray();
+                    json.flush();
+                }
+            }
+        }
+        return count[0];
+    }
+
+    @FunctionalInterface
+    private interface RegionWriter {
+        void write(Region region) throws IOException;
+    }
+
+    private static void forEach(RegionManager regionManager, RegionWriter writer) throws IOException {
+        try {
+            regionManager.forEachRegion(region -> {
+                try {
+                    writer.write(region);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String toCsv(Region region) {
+        BlockPos pos1 = region.getPos1();
+        BlockPos pos2 = region.getPos2();
+        return String.join(",",
+            csvField(region.getName()),
+            csvField(region.getDimension().location().toString()),
+            String.valueOf(pos1.getX()), String.valueOf(pos1.getY()), String.valueOf(pos1.getZ()),
+            String.valueOf(pos2.getX()), String.valueOf(pos2.getY()), String.valueOf(pos2.getZ()),
+            csvField(region.getMusicFile() != null ? region.getMusicFile() : ""),
+            String.valueOf(region.isLoopEnabled()),
+            String.valueOf(region.isFadeEnabled()),
+            String.valueOf(region.getPriority()));
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,48 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.core.BlockPos;
+
+/**
+ * Histéresis en los bordes de las regiones. Para entrar hay que estar al menos
+ * {@code entryMargin} bloques dentro (menos en regiones demasiado pequeñas); para salir hay
+ * que alejarse más de {@code exitMargin} bloques fuera. Además la nueva región tiene que
+ * mantenerse {@code minDwellMillis} antes de confirmar la transición.
+ *
+ * La usan el servidor ({@link RegionTracker}) y el espejo del cliente con los mismos valores,
+ * así ambos deciden lo mismo al caminar por un borde.
+ */
+public record RegionHysteresis(int entryMargin, int exitMargin, long minDwellMillis) {
+    public static final RegionHysteresis NONE = new RegionHysteresis(0, 0, 0);
+
+    /**
+     * Indica si el punto sigue contando como dentro de una región en la que ya estaba.
+     */
+    public boolean holds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int x, int y, int z) {
+        return x >= minX - exitMargin && x <= maxX + exitMargin
+            && y >= minY - exitMargin && y <= maxY + exitMargin
+            && z >= minZ - exitMargin && z <= maxZ + exitMargin;
+    }
+
+    /**
+     * Indica si el punto está lo bastante adentro para entrar en la región.
+     */
+    public boolean admits(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int x, int y, int z) {
+        return inside(minX, maxX, x) && inside(minY, maxY, y) && inside(minZ, maxZ, z);
+    }
+
+    public boolean holds(Region region, BlockPos pos) {
+        return holds(region.getMinX(), region.getMinY(), region.getMinZ(), region.getMaxX(), region.getMaxY(), region.getMaxZ(),
+            pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public boolean admits(Region region, BlockPos pos) {
+        return admits(region.getMinX(), region.getMinY(), region.getMinZ(), region.getMaxX(), region.getMaxY(), region.getMaxZ(),
+            pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    private boolean inside(int min, int max, int value) {
+        // En un eje más angosto que dos márgenes alcanza con llegar al centro.
+        int margin = (int) Math.min(entryMargin, ((long) max - min) / 2);
+        return value >= min + margin && value <= max - margin;
+    }
+}
@@ -0,0 +1,39 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Índice espacial de las regiones de una dimensión. Hay dos implementaciones que se eligen
+ * en la configuración del servidor (ver {@link RegionIndexType}): la rejilla por chunks y
+ * la jerarquía de cajas envolventes (BVH).
+ *
+ * Un índice publicado en una {@link RegionSnapshot} no se vuelve a modificar; los cambios
+ * se hacen sobre {@link #copy()}.
+ */
+public interface RegionIndex {
+    RegionIndex copy();
+
+    void insert(Region region);
+
+    boolean remove(Region region);
+
+    Optional<Region> find(BlockPos pos);
+
+    RegionLookup lookup(BlockPos pos);
+
+    /**
+     * Todas las regiones cuyos límites tocan la caja, sin repetir.
+     */
+    List<Region> query(BoundingBox box);
+
+    int size();
+
+    /**
+     * Resumen corto para las estadísticas.
+     */
+    String describe();
+}
@@ -0,0 +1,46 @@
+package com.riburitu.regionvisualizer.util;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Implementaciones disponibles de {@link RegionIndex}, seleccionables con la opción
+ * {@code regionIndex} de la configuración del servidor.
+ */
+public enum RegionIndexType {
+    // Rejilla por chunks: ideal para regiones pequeñas y medianas repartidas por el mapa.
+    GRID("grid"),
+    // Jerarquía de cajas: no duplica regiones enormes ni deja celdas vacías con miles de habitaciones.
+    BVH("bvh");
+
+    private final String configName;
+
+    RegionIndexType(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    public RegionIndex create() {
+        return this == BVH ? new RegionBvhIndex() : new RegionSpatialIndex();
+    }
+
+    /**
+     * Construye el índice de una sola vez, más rápido que insertar región por región.
+     */
+    public RegionIndex build(List<Region> regions) {
+        return this == BVH ? RegionBvhIndex.build(regions) : RegionSpatialIndex.build(regions);
+    }
+
+    public static RegionIndexType fromConfig(String value) {
+        if (value != null) {
+            String normalized = value.trim().toLowerCase(Locale.ROOT);
+            for (RegionIndexType type : values()) {
+                if (type.configName.equals(normalized)) return type;
+            }
+        }
+        return GRID;
+    }
+}
@@ -0,0 +1,235 @@
+package com.riburitu.regionvisualizer.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Diario de cambios de regiones hechos desde el último guardado del mundo (las regiones
+ * completas van en {@link RegionSavedData}). Cada cambio (alta, modificación, baja, renombre
+ * o borrado total) se agrega al final como un registro corto, así una edición queda a salvo
+ * de una caída sin esperar al autoguardado y cuesta unos pocos bytes.
+ *
+ * Formato de cada registro: longitud (int), CRC32 del contenido (int) y contenido
+ * (tipo en un byte y sus datos). Al cargar se aplican los registros sobre la instantánea;
+ * un registro cortado o con CRC incorrecto marca el final de lo que llegó a escribirse y
+ * el resto del archivo se descarta.
+ *
+ * Todos los registros se expresan por nombre y llevan la región completa, así que volver a
+ * aplicarlos sobre una instantánea que ya los incluye deja el mismo resultado. Eso hace
+ * seguro vaciar el diario después del guardado del mundo, aunque se corte a mitad.
+ */
+public class RegionJournal {
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_RENAME = 3;
+    private static final byte OP_CLEAR = 4;
+    // Un registro más grande que esto solo puede ser basura al final del archivo.
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private final Path file;
+    private FileChannel channel;
+
+    public RegionJournal(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Agrega los registros al final y fuerza el disco una sola vez para todo el grupo.
+     */
+    public void append(List<Record> records) throws IOException {
+        if (records.isEmpty()) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Record record : records) {
+            byte[] payload = record.payload;
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            out.writeInt(payload.length);
+            out.writeInt((int) crc.getValue());
+            out.write(payload);
+        }
+        out.flush();
+
+        FileChannel channel = open();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    public long size() throws IOException {
+        return channel != null ? channel.size() : (Files.exists(file) ? Files.size(file) : 0);
+    }
+
+    /**
+     * Vacía el diario; se llama después de que la instantánea ya incluye todos sus registros.
+     */
+    public void truncate() throws IOException {
+        FileChannel channel = open();
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    public void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("[RegionVisualizer] Error cerrando diario " + file + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private FileChannel open() throws IOException {
+        if (channel == null) {
+            Files.createDirectories(file.getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        return channel;
+    }
+
+    /**
+     * Destino de los registros al recuperar el diario.
+     */
+    public interface Target {
+        void put(Region region);
+
+        void remove(String name);
+
+        void clear();
+    }
+
+    /**
+     * Aplica los registros del diario sobre el destino. Si el final está dañado (corte de luz,
+     * caída a mitad de una escritura) se recorta el archivo hasta el último registro válido.
+     * Devuelve cuántos registros se aplicaron.
+     */
+    public static int replay(Path file, Target target) throws IOException {
+        if (!Files.exists(file)) return 0;
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int applied = 0;
+        int validEnd = 0;
+
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > buffer.remaining()) break;
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) break;
+
+            try {
+                apply(payload, target);
+            } catch (Exception e) {
+                // El CRC es correcto pero el contenido no se entiende: se salta solo este registro.
+                System.err.println("[RegionVisualizer] Registro de diario ignorado: " + e.getMessage());
+            }
+            applied++;
+            validEnd = buffer.position();
+        }
+
+        if (validEnd < data.length) {
+            System.err.println("[RegionVisualizer] Diario dañado a partir del byte " + validEnd + " de " + data.length + ", se descarta el resto: " + file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validEnd);
+                channel.force(true);
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(byte[] payload, Target target) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        byte op = in.get();
+        switch (op) {
+            case OP_PUT -> target.put(Region.fromJson(readJson(in)));
+            case OP_REMOVE -> target.remove(readString(in));
+            case OP_RENAME -> {
+                String oldName = readString(in);
+                target.remove(oldName);
+                target.put(Region.fromJson(readJson(in)));
+            }
+            case OP_CLEAR -> target.clear();
+            default -> throw new IllegalStateException("tipo de registro desconocido: " + op);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static JsonObject readJson(ByteBuffer in) {
+        return JsonParser.parseString(readString(in)).getAsJsonObject();
+    }
+
+    /**
+     * Un cambio ya serializado, listo para agregarse al diario.
+     */
+    public static final class Record {
+        private final byte[] payload;
+
+        private Record(byte[] payload) {
+            this.payload = payload;
+        }
+
+        public static Record put(Region region) {
+            return encode(OP_PUT, null, region);
+        }
+
+        public static Record remove(String name) {
+            return encode(OP_REMOVE, name, null);
+        }
+
+        public static Record rename(String oldName, Region renamed) {
+            return encode(OP_RENAME, oldName, renamed);
+        }
+
+        public static Record clear() {
+            return encode(OP_CLEAR, null, null);
+        }
+
+        private static Record encode(byte op, String name, Region region) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(op);
+                if (name != null) writeString(out, name);
+                if (region != null) writeString(out, region.toJson().toString());
+                out.flush();
+                return new Record(bytes.toByteArray());
+            } catch (IOException e) {
+                // Un ByteArrayOutputStream no lanza IOException.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
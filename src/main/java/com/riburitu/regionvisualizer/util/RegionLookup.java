@@ -0,0 +1,119 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+
+import java.util.Optional;
+
+/**
+ * Resultado de una búsqueda puntual: la región encontrada (si hay) y una caja segura
+ * alrededor del punto que no cruza ningún borde de región. Mientras el jugador siga dentro
+ * de esa caja el resultado no puede cambiar, así que no hace falta volver a consultar el índice.
+ */
+public final class RegionLookup {
+    private final Region region;
+    private final BoundingBox safeBox;
+
+    RegionLookup(Region region, BoundingBox safeBox) {
+        this.region = region;
+        this.safeBox = safeBox;
+    }
+
+    public Optional<Region> getRegion() {
+        return Optional.ofNullable(region);
+    }
+
+    public BoundingBox getSafeBox() {
+        return safeBox;
+    }
+
+    /**
+     * Columna de 16x16 bloques (todo el alto) que contiene el punto; es la caja inicial
+     * antes de recortarla contra las regiones candidatas.
+     */
+    static BoundingBox chunkColumn(BlockPos pos) {
+        int cx = SectionPos.blockToSectionCoord(pos.getX());
+        int cz = SectionPos.blockToSectionCoord(pos.getZ());
+        return new BoundingBox(
+            SectionPos.sectionToBlockCoord(cx), Integer.MIN_VALUE, SectionPos.sectionToBlockCoord(cz),
+            SectionPos.sectionToBlockCoord(cx, 15), Integer.MAX_VALUE, SectionPos.sectionToBlockCoord(cz, 15));
+    }
+
+    /**
+     * Recorta la caja segura región por región. Cada índice le pasa, en cualquier orden, los
+     * candidatos que pueden tocar la columna del punto; la ganadora se decide por
+     * {@link Region#PRECEDENCE}.
+     */
+    static final class Builder {
+        private final int[] box;
+        private final int[] p;
+        private final BlockPos pos;
+        private Region found;
+
+        Builder(BlockPos pos) {
+            BoundingBox column = chunkColumn(pos);
+            this.box = new int[] {
+                column.minX(), column.minY(), column.minZ(),
+                column.maxX(), column.maxY(), column.maxZ()
+            };
+            this.p = new int[] { pos.getX(), pos.getY(), pos.getZ() };
+            this.pos = pos;
+        }
+
+        void accept(Region region) {
+            int[] min = { region.getMinX(), region.getMinY(), region.getMinZ() };
+            int[] max = { region.getMaxX(), region.getMaxY(), region.getMaxZ() };
+
+            // Si la región ya no toca la caja, no hay borde que recortar.
+            for (int axis = 0; axis < 3; axis++) {
+                if (max[axis] < box[axis] || min[axis] > box[axis + 3]) return;
+            }
+
+            if (region.contains(pos)) {
+                // Dentro de la región: salir de ella obliga a reevaluar.
+                for (int axis = 0; axis < 3; axis++) {
+                    box[axis] = Math.max(box[axis], min[axis]);
+                    box[axis + 3] = Math.min(box[axis + 3], max[axis]);
+                }
+                if (region.outranks(found)) found = region;
+                return;
+            }
+
+            // Fuera de la región: se corta por el eje que deja la caja más grande.
+            int bestAxis = -1;
+            int bestMin = 0;
+            int bestMax = 0;
+            double bestVolume = -1;
+            for (int axis = 0; axis < 3; axis++) {
+                int newMin = box[axis];
+                int newMax = box[axis + 3];
+                if (p[axis] < min[axis]) {
+                    newMax = Math.min(newMax, min[axis] - 1);
+                } else if (p[axis] > max[axis]) {
+                    newMin = Math.max(newMin, max[axis] + 1);
+                } else {
+                    continue;
+                }
+                double volume = (double) (newMax - newMin + 1);
+                for (int other = 0; other < 3; other++) {
+                    if (other != axis) volume *= (double) box[other + 3] - box[other] + 1;
+                }
+                if (volume > bestVolume) {
+                    bestVolume = volume;
+                    bestAxis = axis;
+                    bestMin = newMin;
+                    bestMax = newMax;
+                }
+            }
+            if (bestAxis >= 0) {
+                box[bestAxis] = bestMin;
+                box[bestAxis + 3] = bestMax;
+            }
+        }
+
+        RegionLookup build() {
+            return new RegionLookup(found, new BoundingBox(box[0], box[1], box[2], box[3], box[4], box[5]));
+        }
+    }
+}
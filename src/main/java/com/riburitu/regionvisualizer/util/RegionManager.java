@@ -1,28 +1,109 @@
 package com.riburitu.regionvisualizer.util;
 
-import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.storage.LevelResource;
 import net.minecraft.core.BlockPos;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 public class RegionManager {
     private static final String FOLDER_NAME = "regionvisualizer";
-    private static final String FILE_NAME = "regions.json";
+    // Formatos anteriores a RegionSavedData: se leen una sola vez, si el mundo todavía no tiene
+    // datos de regiones, y se renombran cuando el mundo ya se guardó con ellas.
+    private static final String LEGACY_BINARY_NAME = "regions.dat";
+    private static final String LEGACY_JSON_NAME = "regions.json";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    private static final String JOURNAL_NAME = "regions.journal";
+    private static final String SHARD_FOLDER = "shards";
+    // Cada cuántos ticks se revisan los fragmentos alrededor de los jugadores, y cuántos ticks
+    // sin nadie cerca tiene que pasar un fragmento para sacarlo de memoria.
+    private static final int SHARD_CHECK_INTERVAL = 20;
+    private static final long SHARD_IDLE_TICKS = 1200;
     private static final org.slf4j.Logger LOGGER = org.slf4j.LoggerFactory.getLogger(RegionManager.class);
     
-    private final List<Region> regions = new ArrayList<>();
+    // Instantánea publicada. Los lectores (cualquier hilo) la leen sin bloqueos; los escritores
+    // preparan la siguiente aparte y la publican de una sola vez bajo writeLock.
+    private volatile RegionSnapshot snapshot = RegionSnapshot.EMPTY;
+    private final Object writeLock = new Object();
+    // Cambios aún no escritos en el diario, en orden. Se agregan bajo writeLock junto con la instantánea que los incluye.
+    private final List<RegionJournal.Record> pendingRecords = new ArrayList<>();
+    private Path storageFolder;
+    // Datos guardados con el mundo, uno por dimensión. Se reemplaza entero al cargar.
+    private volatile Map<ResourceKey<Level>, RegionSavedData> savedData = Map.of();
+    // Revisión que ya está completa en los datos guardados del mundo, y revisión hasta la que
+    // llega el diario. Cuando la primera alcanza a la segunda el diario se puede vaciar.
+    private int persistedRevision = -1;
+    private int journaledRevision = -1;
+    // Los archivos anteriores se renombran cuando el mundo ya se guardó con sus regiones.
+    private boolean legacyPending;
+    // Catálogo y fragmentos cargados; bajo writeLock como la instantánea.
+    private final RegionShardStore shards = new RegionShardStore();
+    private long shardTick;
+    // Fragmentos cerca de los jugadores que se están leyendo en segundo plano; bajo writeLock.
+    private final Map<RegionShardStore.ShardId, CompletableFuture<List<Region>>> pendingShardReads = new HashMap<>();
+    private final ExecutorService shardReader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RegionVisualizer-Shards");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Solo lo usa el hilo de guardado.
+    private RegionJournal journal;
+    // Los guardados se agrupan y se escriben fuera del hilo del servidor.
+    private final RegionSaveQueue saveQueue = new RegionSaveQueue(this::writeStorage, 2000, 10000);
 
+    public RegionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Regiones en memoria: las de varios fragmentos y las de los fragmentos cargados. Para
+     * todas las que existen, ver {@link #getRegionNames()}.
+     */
     public List<Region> getRegions() {
-        return Collections.unmodifiableList(regions);
+        return snapshot.getRegions();
+    }
+
+    /**
+     * Nombres de todas las regiones, estén cargadas o no, en orden alfabético.
+     */
+    public List<String> getRegionNames() {
+        synchronized (writeLock) {
+            return shards.getNames();
+        }
+    }
+
+    public int getRegionCount() {
+        synchronized (writeLock) {
+            return shards.size();
+        }
     }
+
     public void updateRegion(Region updatedRegion) {
-        regions.removeIf(region -> region.getName().equalsIgnoreCase(updatedRegion.getName()));
-        regions.add(updatedRegion);
+        synchronized (writeLock) {
+            Mutation mutation = new Mutation();
+            try {
+                mutation.put(updatedRegion);
+                pendingRecords.add(RegionJournal.Record.put(updatedRegion));
+            } finally {
+                mutation.publish();
+            }
+        }
         System.out.println("[RegionVisualizer] Región actualizada: " + updatedRegion.getName() + ", música: " + updatedRegion.getMusicFile() + ", loopEnabled: " + updatedRegion.isLoopEnabled());
     }
     
@@ -32,15 +113,19 @@ public class RegionManager {
             return;
         }
         
-        boolean exists = regions.stream()
-            .anyMatch(r -> r.getName().equalsIgnoreCase(region.getName()));
-            
-        if (exists) {
-            System.err.println("[RegionVisualizer] Ya existe una región con el nombre: " + region.getName());
-            return;
+        synchronized (writeLock) {
+            if (shards.contains(region.getName())) {
+                System.err.println("[RegionVisualizer] Ya existe una región con el nombre: " + region.getName());
+                return;
+            }
+            Mutation mutation = new Mutation();
+            try {
+                mutation.put(region);
+                pendingRecords.add(RegionJournal.Record.put(region));
+            } finally {
+                mutation.publish();
+            }
         }
-        
-        regions.add(region);
         System.out.println("[RegionVisualizer] Región agregada: " + region.getName() + ", música: " + region.getMusicFile() + ", loopEnabled: " + region.isLoopEnabled());
     }
 
@@ -50,7 +135,19 @@ public class RegionManager {
             return false;
         }
         
-        boolean removed = regions.removeIf(r -> r.getName().equalsIgnoreCase(name));
+        boolean removed;
+        synchronized (writeLock) {
+            removed = shards.contains(name);
+            if (removed) {
+                Mutation mutation = new Mutation();
+                try {
+                    mutation.remove(name);
+                    pendingRecords.add(RegionJournal.Record.remove(name));
+                } finally {
+                    mutation.publish();
+                }
+            }
+        }
         
         if (removed) {
             System.out.println("[RegionVisualizer] Región eliminada: " + name);
@@ -61,120 +158,719 @@ public class RegionManager {
         return removed;
     }
 
-    public Optional<Region> getRegionContaining(BlockPos pos) {
-        if (pos == null) return Optional.empty();
+    /**
+     * Cambia el nombre de una región en un solo paso, sin publicar un estado intermedio sin ella.
+     */
+    public boolean renameRegion(String name, String newName) {
+        if (name == null || newName == null || newName.trim().isEmpty()) return false;
+
+        synchronized (writeLock) {
+            Mutation mutation = new Mutation();
+            try {
+                mutation.ensureLoadedFor(name);
+                mutation.ensureLoadedFor(newName);
+                Optional<Region> existing = mutation.builder.get(name);
+                if (existing.isEmpty()) return false;
+                // Solo se rechaza si el nombre nuevo pertenece a otra región (permite cambiar mayúsculas).
+                Optional<Region> clash = mutation.builder.get(newName);
+                if (clash.isPresent() && clash.get() != existing.get()) return false;
+
+                Region renamed = existing.get().withName(newName);
+                mutation.remove(name);
+                mutation.put(renamed);
+                pendingRecords.add(RegionJournal.Record.rename(name, renamed));
+            } finally {
+                mutation.publish();
+            }
+        }
+        System.out.println("[RegionVisualizer] Región renombrada: " + name + " -> " + newName);
+        return true;
+    }
+
+    public Optional<Region> getRegionContaining(ResourceKey<Level> dimension, BlockPos pos) {
+        if (dimension == null || pos == null) return Optional.empty();
         
-        return regions.stream()
-            .filter(r -> r.contains(pos))
-            .findFirst();
+        return snapshot.getRegionContaining(dimension, pos);
+    }
+
+    public RegionLookup lookup(ResourceKey<Level> dimension, BlockPos pos) {
+        return snapshot.lookup(dimension, pos);
+    }
+
+    public RegionIndexType getIndexType() {
+        return snapshot.getIndexType();
+    }
+
+    /**
+     * Cambia la implementación del índice espacial y reconstruye los índices de todas las dimensiones.
+     */
+    public void setIndexType(RegionIndexType type) {
+        if (type == null) return;
+        synchronized (writeLock) {
+            if (snapshot.getIndexType() == type) return;
+            RegionSnapshot.Builder builder = snapshot.toBuilder();
+            builder.setIndexType(type);
+            snapshot = builder.build();
+        }
+        System.out.println("[RegionVisualizer] Índice espacial: " + type.getConfigName());
+    }
+
+    public int getRevision() {
+        return snapshot.getRevision();
     }
 
+    /**
+     * Busca la región por nombre. Si está en un fragmento que no está cargado, lo carga.
+     */
     public Optional<Region> getRegionByName(String name) {
         if (name == null || name.trim().isEmpty()) return Optional.empty();
         
-        return regions.stream()
-                .filter(region -> region.getName().equalsIgnoreCase(name))
-                .findFirst();
+        Optional<Region> region = snapshot.getByName(name);
+        if (region.isPresent()) return region;
+        synchronized (writeLock) {
+            if (!shards.contains(name)) return Optional.empty();
+            Mutation mutation = new Mutation();
+            try {
+                mutation.ensureLoadedFor(name);
+            } finally {
+                mutation.publish();
+            }
+        }
+        return snapshot.getByName(name);
     }
 
+    /**
+     * Carga los fragmentos alrededor de cada jugador (el suyo y los ocho vecinos) y saca de
+     * memoria los que llevan {@link #SHARD_IDLE_TICKS} ticks sin nadie cerca y ya están guardados.
+     * Los archivos se leen en segundo plano y las regiones se publican en un tick posterior;
+     * un cambio o una búsqueda por nombre que necesite el fragmento antes lo lee en el momento.
+     * Se llama en cada tick del servidor; la revisión de los jugadores es cada {@link #SHARD_CHECK_INTERVAL}.
+     */
+    public void updateResidentShards(MinecraftServer server) {
+        long tick = server.getTickCount();
+        installShardReads(tick);
+        if (tick % SHARD_CHECK_INTERVAL != 0) return;
+
+        int requested = 0;
+        int unloaded;
+        synchronized (writeLock) {
+            shardTick = tick;
+            List<RegionShardStore.ShardId> missing = new ArrayList<>();
+            for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+                ResourceKey<Level> dimension = player.level().dimension();
+                int shardX = player.getBlockX() >> RegionShardStore.SHARD_SHIFT;
+                int shardZ = player.getBlockZ() >> RegionShardStore.SHARD_SHIFT;
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        RegionShardStore.ShardId shard = new RegionShardStore.ShardId(dimension, ChunkPos.asLong(shardX + dx, shardZ + dz));
+                        if (!shards.isKnown(shard)) continue;
+                        if (shards.isResident(shard)) {
+                            shards.touch(shard, tick);
+                        } else if (shards.canRetry(shard, tick)) {
+                            missing.add(shard);
+                        }
+                    }
+                }
+            }
+            for (RegionShardStore.ShardId shard : missing) {
+                if (pendingShardReads.containsKey(shard)) continue;
+                Path file = shards.fileOf(shard);
+                CompletableFuture<List<Region>> read = new CompletableFuture<>();
+                shardReader.execute(() -> {
+                    try {
+                        read.complete(RegionShardStore.read(file));
+                    } catch (IOException e) {
+                        read.completeExceptionally(e);
+                    }
+                });
+                pendingShardReads.put(shard, read);
+                requested++;
+            }
+
+            List<String> evicted = shards.evictIdle(tick, SHARD_IDLE_TICKS);
+            unloaded = evicted.size();
+            if (!evicted.isEmpty()) {
+                Mutation mutation = new Mutation();
+                try {
+                    // El catálogo los conserva: solo salen de la instantánea.
+                    for (String name : evicted) {
+                        mutation.builder.remove(name);
+                    }
+                    mutation.changed = true;
+                } finally {
+                    mutation.publish();
+                }
+            }
+        }
+        if (requested > 0 || unloaded > 0) {
+            System.out.println("[RegionVisualizer] Fragmentos: " + requested + " pedidos, " + unloaded + " regiones descargadas");
+        }
+    }
+
+    /**
+     * Publica en una sola instantánea los fragmentos que terminaron de leerse en segundo plano.
+     * Los que ya se cargaron por otro camino mientras tanto se descartan.
+     */
+    private void installShardReads(long tick) {
+        int loaded = 0;
+        synchronized (writeLock) {
+            if (pendingShardReads.isEmpty()) return;
+            // La instantánea solo se copia si hay algo que publicar.
+            Mutation mutation = null;
+            try {
+                Iterator<Map.Entry<RegionShardStore.ShardId, CompletableFuture<List<Region>>>> iterator = pendingShardReads.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<RegionShardStore.ShardId, CompletableFuture<List<Region>>> entry = iterator.next();
+                    if (!entry.getValue().isDone()) continue;
+                    iterator.remove();
+                    RegionShardStore.ShardId shard = entry.getKey();
+                    if (shards.isResident(shard)) continue;
+                    List<Region> read;
+                    try {
+                        read = entry.getValue().join();
+                    } catch (CompletionException e) {
+                        shards.markFailed(shard, tick);
+                        System.err.println("[RegionVisualizer] " + e.getCause().getMessage() + "; se reintentará más tarde");
+                        continue;
+                    }
+                    if (mutation == null) mutation = new Mutation();
+                    for (Region region : shards.install(shard, read, tick)) {
+                        mutation.builder.put(region);
+                    }
+                    mutation.changed = true;
+                    loaded++;
+                }
+            } finally {
+                if (mutation != null) mutation.publish();
+            }
+        }
+        if (loaded > 0) {
+            System.out.println("[RegionVisualizer] Fragmentos: " + loaded + " cargados");
+        }
+    }
+
+    /**
+     * Pide escribir los cambios en el diario. Las regiones completas las guarda el mundo (ver
+     * {@link RegionSavedData}); el diario solo cubre lo editado desde el último guardado del
+     * mundo y se escribe en segundo plano, ver {@link RegionSaveQueue}.
+     */
     public void saveRegions(ServerLevel level) {
         Path folder = level.getServer().getWorldPath(LevelResource.ROOT).resolve(FOLDER_NAME);
         if (folder == null) {
             System.err.println("[RegionVisualizer] No se pudo obtener la carpeta de guardado");
             return;
         }
+        synchronized (writeLock) {
+            storageFolder = folder;
+        }
+        saveQueue.request();
+    }
+
+    /**
+     * Escribe de inmediato los cambios pendientes en el diario y espera a que termine. Se
+     * llama al detener el servidor.
+     */
+    public void flushSaves() {
+        saveQueue.flush();
+    }
+
+    public boolean isDirty() {
+        return saveQueue.isDirty();
+    }
+
+    public void configureSaves(long quietMillis, long maxDelayMillis) {
+        saveQueue.configure(quietMillis, maxDelayMillis);
+    }
+
+    /**
+     * Se llama después de que el mundo guardó una dimensión: escribe los fragmentos sucios de
+     * esa dimensión. Cuando ya no queda nada sucio en ninguna, el estado actual está completo
+     * en disco y el diario se puede vaciar.
+     */
+    public void onLevelSaved(ServerLevel level) {
+        List<RegionShardStore.PendingWrite> writes = List.of();
+        synchronized (writeLock) {
+            try {
+                writes = shards.takeDirty(level.dimension(), snapshot);
+            } catch (IOException e) {
+                System.err.println("[RegionVisualizer] Error serializando fragmentos: " + e.getMessage());
+            }
+        }
+        if (!writes.isEmpty()) {
+            List<RegionShardStore.PendingWrite> failed = RegionShardStore.write(writes);
+            synchronized (writeLock) {
+                for (RegionShardStore.PendingWrite write : failed) {
+                    shards.markDirty(write.shard());
+                }
+            }
+            System.out.println("[RegionVisualizer] Fragmentos guardados en " + level.dimension().location() + ": " + (writes.size() - failed.size()) + " de " + writes.size());
+        }
+
+        synchronized (writeLock) {
+            for (RegionSavedData data : savedData.values()) {
+                if (data.isDirty()) return;
+            }
+            if (shards.hasDirty()) return;
+            if (persistedRevision == snapshot.getRevision() && !legacyPending) return;
+            persistedRevision = snapshot.getRevision();
+        }
+        saveQueue.request();
+    }
+
+    /**
+     * Regiones que se guardan completas en los datos de esa dimensión: las que ocupan varios
+     * fragmentos y, en el overworld, las de dimensiones que ya no existen (un mod de
+     * dimensiones quitado), para no perderlas.
+     */
+    List<Region> getManifestRegions(ResourceKey<Level> dimension) {
+        List<Region> regions = new ArrayList<>();
+        synchronized (writeLock) {
+            for (RegionShardStore.Entry entry : shards.entries()) {
+                if (entry.shard() != null) continue;
+                ResourceKey<Level> own = entry.dimension();
+                if (own.equals(dimension) || (dimension.equals(Level.OVERWORLD) && !savedData.containsKey(own))) {
+                    snapshot.getByName(entry.name()).ifPresent(regions::add);
+                }
+            }
+        }
+        return regions;
+    }
+
+    Map<Long, List<String>> getShardCatalog(ResourceKey<Level> dimension) {
+        synchronized (writeLock) {
+            return shards.getCatalog(dimension);
+        }
+    }
+
+    // Las regiones de dimensiones sin datos propios van completas con el overworld.
+    private RegionShardStore.ShardId shardFor(Region region) {
+        return savedData.containsKey(region.getDimension()) ? RegionShardStore.shardOf(region) : null;
+    }
+
+    // Bajo writeLock.
+    private void markDirty(ResourceKey<Level> dimension) {
+        RegionSavedData data = savedData.get(dimension);
+        if (data == null) data = savedData.get(Level.OVERWORLD);
+        if (data != null) data.setDirty();
+    }
+
+    // Se ejecuta en el hilo de guardado (o en flushSaves). Los registros y la revisión se toman
+    // juntos bajo writeLock, así la revisión cubre exactamente lo que va al diario.
+    private void writeStorage(boolean flush) {
+        Path folder;
+        List<RegionJournal.Record> records;
+        int revision;
+        int persisted;
+        int journaled;
+        boolean retireLegacy;
+        synchronized (writeLock) {
+            folder = storageFolder;
+            records = new ArrayList<>(pendingRecords);
+            pendingRecords.clear();
+            revision = snapshot.getRevision();
+            persisted = persistedRevision;
+            journaled = journaledRevision;
+            retireLegacy = legacyPending && persisted >= 0;
+        }
+        if (folder == null) return;
 
         try {
-            if (!Files.exists(folder)) {
-                Files.createDirectories(folder);
-                System.out.println("[RegionVisualizer] Carpeta creada: " + folder);
-            }
-            
-            Path file = folder.resolve(FILE_NAME);
-            JsonArray array = new JsonArray();
-            for (Region r : regions) {
-                try {
-                    JsonObject regionJson = r.toJson();
-                    if (regionJson != null) {
-                        array.add(regionJson);
-                        System.out.println("[RegionVisualizer] Serializando región: " + r.getName() + ", música: " + r.getMusicFile() + ", loopEnabled: " + r.isLoopEnabled());
+            if (journal == null || !journal.getFile().equals(folder.resolve(JOURNAL_NAME))) {
+                if (journal != null) journal.close();
+                journal = new RegionJournal(folder.resolve(JOURNAL_NAME));
+            }
+            // Lo que el mundo ya guardó no hace falta en el diario.
+            if (revision > persisted && !records.isEmpty()) {
+                journal.append(records);
+                journaled = revision;
+            }
+            if (journaled <= persisted && journal.size() > 0) {
+                journal.truncate();
+                System.out.println("[RegionVisualizer] Diario vaciado: las regiones ya están guardadas con el mundo");
+            }
+            if (retireLegacy) {
+                retireLegacyFiles(folder);
+            }
+            synchronized (writeLock) {
+                journaledRevision = Math.max(journaledRevision, journaled);
+                if (retireLegacy) legacyPending = false;
+            }
+        } catch (IOException e) {
+            System.err.println("[RegionVisualizer] Error de I/O guardando regiones: " + e.getMessage());
+            e.printStackTrace();
+            // Los registros que no llegaron al disco vuelven a la cola para el próximo intento.
+            synchronized (writeLock) {
+                pendingRecords.addAll(0, records);
+            }
+            if (!flush) saveQueue.request();
+        } finally {
+            if (flush && journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    private void retireLegacyFiles(Path folder) throws IOException {
+        for (String name : new String[] {LEGACY_BINARY_NAME, LEGACY_JSON_NAME}) {
+            Path legacy = folder.resolve(name);
+            if (!Files.exists(legacy)) continue;
+            Files.move(legacy, folder.resolve(name + MIGRATED_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("[RegionVisualizer] " + name + " ya está en los datos del mundo, copia en " + name + MIGRATED_SUFFIX);
+        }
+    }
+
+    /**
+     * Carga las regiones de los datos guardados de cada dimensión y les aplica los cambios del
+     * diario que el mundo todavía no había guardado. Si el mundo no tiene datos de regiones se
+     * leen los archivos anteriores (regions.dat o regions.json) y se marcan para guardarse.
+     */
+    public void loadRegions(MinecraftServer server) {
+        // Si quedaba algo pendiente de otro mundo (servidor integrado), se escribe antes de cambiar de carpeta.
+        flushSaves();
+
+        Path folder = server.getWorldPath(LevelResource.ROOT).resolve(FOLDER_NAME);
+        Path journalFile = folder.resolve(JOURNAL_NAME);
+        long start = System.nanoTime();
+        String source;
+
+        // Se arma la instantánea completa aparte y se publica de una vez. Los fragmentos no se
+        // leen aquí: se cargan cuando un jugador se acerca (ver updateResidentShards).
+        synchronized (writeLock) {
+            RegionSnapshot.Builder builder = snapshot.toBuilder();
+            builder.clear();
+            shards.reset(folder.resolve(SHARD_FOLDER));
+            // Lo que se estaba leyendo es del mundo anterior.
+            pendingShardReads.clear();
+            shardTick = server.getTickCount();
+            Mutation mutation = new Mutation(builder);
+
+            Map<ResourceKey<Level>, RegionSavedData> data = new HashMap<>();
+            for (ServerLevel level : server.getAllLevels()) {
+                ResourceKey<Level> dimension = level.dimension();
+                data.put(dimension, level.getDataStorage().computeIfAbsent(
+                    tag -> RegionSavedData.load(tag, this, dimension),
+                    () -> new RegionSavedData(this, dimension),
+                    RegionSavedData.DATA_NAME));
+            }
+            savedData = Map.copyOf(data);
+
+            boolean worldHasData = false;
+            boolean upgraded = false;
+            for (RegionSavedData levelData : savedData.values()) {
+                if (!levelData.wasLoaded()) continue;
+                worldHasData = true;
+                for (Map.Entry<Long, List<String>> entry : levelData.takeLoadedShards().entrySet()) {
+                    shards.restore(new RegionShardStore.ShardId(levelData.getDimension(), entry.getKey()), entry.getValue());
+                }
+            }
+            for (RegionSavedData levelData : savedData.values()) {
+                for (Region region : levelData.takeLoaded()) {
+                    if (shards.contains(region.getName())) {
+                        LOGGER.warn("[RegionVisualizer] Región duplicada ignorada: {}", region.getName());
+                        continue;
                     }
-                } catch (Exception e) {
-                    System.err.println("[RegionVisualizer] Error serializando región " + r.getName() + ": " + e.getMessage());
-                    e.printStackTrace();
+                    // Las que vienen completas pero caben en un fragmento son de la versión 1: pasan a su fragmento.
+                    upgraded |= mutation.restore(region);
                 }
             }
 
-            try (Writer writer = Files.newBufferedWriter(file)) {
-                Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                gson.toJson(array, writer);
-                System.out.println("[RegionVisualizer] Regiones guardadas exitosamente: " + regions.size() + " en " + file);
+            boolean migrate = false;
+            if (worldHasData) {
+                source = "datos del mundo";
+            } else {
+                source = loadLegacyFiles(folder, region -> {
+                    if (shards.contains(region.getName())) {
+                        LOGGER.warn("[RegionVisualizer] Región duplicada ignorada: {}", region.getName());
+                        return;
+                    }
+                    mutation.put(region);
+                });
+                migrate = source != null;
+            }
+
+            int replayed = 0;
+            try {
+                replayed = RegionJournal.replay(journalFile, mutation);
+                if (replayed > 0) {
+                    System.out.println("[RegionVisualizer] Cambios recuperados del diario: " + replayed);
+                }
             } catch (IOException e) {
-                System.err.println("[RegionVisualizer] Error de I/O al escribir " + file + ": " + e.getMessage());
+                System.err.println("[RegionVisualizer] Error de I/O al leer el diario " + journalFile + ": " + e.getMessage());
                 e.printStackTrace();
             }
-            
+
+            snapshot = builder.build();
+            storageFolder = folder;
+            pendingRecords.clear();
+            legacyPending = migrate;
+            journaledRevision = snapshot.getRevision();
+            if (migrate || upgraded || replayed > 0) {
+                // El mundo todavía no tiene este estado: se guarda en el próximo guardado y hasta entonces se conserva el diario.
+                persistedRevision = -1;
+                for (RegionSavedData levelData : savedData.values()) {
+                    levelData.setDirty();
+                }
+            } else {
+                persistedRevision = snapshot.getRevision();
+            }
+        }
+
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("[RegionVisualizer] Regiones cargadas: " + getRegionCount() + " (" + snapshot.size() + " en memoria) desde " + (source != null ? source : folder) + " en " + elapsed + " ms");
+    }
+
+    // Devuelve el archivo leído, o null si no había ninguno o no se pudo leer.
+    private String loadLegacyFiles(Path folder, Consumer<Region> sink) {
+        Path binaryFile = folder.resolve(LEGACY_BINARY_NAME);
+        Path jsonFile = folder.resolve(LEGACY_JSON_NAME);
+        try {
+            if (Files.exists(binaryFile)) {
+                RegionBinaryFormat.read(Files.readAllBytes(binaryFile), sink);
+                System.out.println("[RegionVisualizer] Convirtiendo " + binaryFile + " (" + Files.size(binaryFile) + " bytes) a datos del mundo");
+                return LEGACY_BINARY_NAME;
+            }
+            if (Files.exists(jsonFile)) {
+                try (Reader reader = Files.newBufferedReader(jsonFile)) {
+                    readLegacyJson(reader, sink);
+                }
+                System.out.println("[RegionVisualizer] Convirtiendo " + jsonFile + " (" + Files.size(jsonFile) + " bytes) a datos del mundo");
+                return LEGACY_JSON_NAME;
+            }
         } catch (IOException e) {
-            System.err.println("[RegionVisualizer] Error de I/O al crear carpeta o escribir " + FILE_NAME + ": " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("[RegionVisualizer] Error inesperado guardando regiones: " + e.getMessage());
+            // Un archivo que no se pudo leer no se renombra: queda para revisarlo a mano.
+            System.err.println("[RegionVisualizer] Error de I/O al cargar regiones anteriores: " + e.getMessage());
             e.printStackTrace();
         }
+        return null;
     }
 
-    public void loadRegions(ServerLevel level) {
-        Path folder = level.getServer().getWorldPath(LevelResource.ROOT).resolve(FOLDER_NAME);
-        Path file = folder.resolve(FILE_NAME);
-        if (!Files.exists(file)) {
-            System.out.println("[RegionVisualizer] No se encontró archivo de regiones: " + file);
-            return;
+    /**
+     * Lee un array JSON de regiones con el formato de {@link Region#toJson()} token a token, sin
+     * cargar el árbol completo en memoria: cada región se entrega apenas se lee, así que el
+     * consumo queda acotado por las regiones y no por el tamaño del archivo. Las entradas que
+     * no se pueden leer se informan una por una y se saltan; un error de sintaxis JSON corta
+     * la lectura, conservando lo leído hasta ahí.
+     */
+    static int readLegacyJson(Reader reader, Consumer<Region> sink) throws IOException {
+        JsonReader in = new JsonReader(reader);
+        // Igual que Gson.fromJson, que era lo que leía estos archivos antes.
+        in.setLenient(true);
+        try {
+            if (in.peek() != JsonToken.BEGIN_ARRAY) {
+                System.out.println("[RegionVisualizer] El archivo de regiones no es un array JSON válido");
+                return 0;
+            }
+        } catch (EOFException e) {
+            System.out.println("[RegionVisualizer] El archivo de regiones está vacío");
+            return 0;
         }
-        try (Reader reader = Files.newBufferedReader(file)) {
-            Gson gson = new Gson();
-            JsonArray array = gson.fromJson(reader, JsonArray.class);
-            if (array != null && array.size() > 0) {
-                regions.clear();
-                for (JsonElement element : array) {
-                    try {
-                        JsonObject obj = element.getAsJsonObject();
-                        Region region = Region.fromJson(obj);
-                        regions.add(region);
-                        LOGGER.info("[RegionVisualizer] Región cargada: {} , música: {} , loopEnabled: {}", region.getName(), region.getMusicFile(), region.isLoopEnabled());
-                    } catch (JsonSyntaxException e) {
-                        LOGGER.error("[RegionVisualizer] JSON inválido en región: {}", e.getMessage(), e);
-                    } catch (Exception e) {
-                        LOGGER.error("[RegionVisualizer] Error deserializando región: {}", e.getMessage(), e);
+
+        int count = 0;
+        int entry = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+            try {
+                sink.accept(Region.fromJson(in));
+                count++;
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("[RegionVisualizer] Error deserializando región (entrada {}): {}", entry, e.getMessage());
+            }
+            entry++;
+        }
+        in.endArray();
+        return count;
+    }
+
+    /**
+     * Resultado de {@link #importRegions}: las regiones nuevas, las que reemplazaron a otras y
+     * los nombres que ya existían y se dejaron como estaban.
+     */
+    public record ImportResult(int added, int replaced, List<String> conflicts) {
+    }
+
+    /**
+     * Agrega muchas regiones en un solo cambio: los índices se reconstruyen una vez al final
+     * en lugar de actualizarse con cada región. Con {@code replace} las que ya existen se
+     * sobrescriben; si no, se conservan y se informan como conflictos.
+     */
+    public ImportResult importRegions(List<Region> regions, boolean replace) {
+        int added = 0;
+        int replaced = 0;
+        List<String> conflicts = new ArrayList<>();
+        synchronized (writeLock) {
+            Mutation mutation = new Mutation();
+            mutation.builder.rebuildIndexes();
+            try {
+                for (Region region : regions) {
+                    if (shards.contains(region.getName())) {
+                        if (!replace) {
+                            conflicts.add(region.getName());
+                            continue;
+                        }
+                        replaced++;
+                    } else {
+                        added++;
                     }
+                    mutation.put(region);
+                    pendingRecords.add(RegionJournal.Record.put(region));
                 }
-                System.out.println("[RegionVisualizer] Regiones cargadas: " + regions.size() + " desde " + file);
-            } else {
-                System.out.println("[RegionVisualizer] El archivo de regiones está vacío o no es un array JSON válido: " + file);
+            } finally {
+                mutation.publish();
             }
-        } catch (IOException e) {
-            System.err.println("[RegionVisualizer] Error de I/O al cargar " + FILE_NAME + ": " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("[RegionVisualizer] Error inesperado cargando regiones: " + e.getMessage());
-            e.printStackTrace();
+        }
+        System.out.println("[RegionVisualizer] Importación: " + added + " nuevas, " + replaced + " reemplazadas, " + conflicts.size() + " conflictos");
+        return new ImportResult(added, replaced, conflicts);
+    }
+
+    /**
+     * Recorre todas las regiones, también las de fragmentos sin cargar, que se leen del disco
+     * sin cargarlos. Pensado para exportar desde otro hilo: solo toma el writeLock para ver
+     * qué fragmentos faltan.
+     */
+    public void forEachRegion(Consumer<Region> consumer) throws IOException {
+        RegionSnapshot current;
+        List<RegionShardStore.UnloadedShard> unloaded;
+        synchronized (writeLock) {
+            current = snapshot;
+            unloaded = shards.unloadedShards();
+        }
+        current.getRegions().forEach(consumer);
+        for (RegionShardStore.UnloadedShard shard : unloaded) {
+            RegionShardStore.readDetached(shard).forEach(consumer);
         }
     }
 
     public void clearAllRegions() {
-        int count = regions.size();
-        regions.clear();
+        int count;
+        synchronized (writeLock) {
+            count = shards.size();
+            Mutation mutation = new Mutation();
+            try {
+                mutation.clear();
+                pendingRecords.add(RegionJournal.Record.clear());
+            } finally {
+                mutation.publish();
+            }
+        }
         System.out.println("[RegionVisualizer] Todas las regiones eliminadas (" + count + " regiones)");
     }
 
     public void printStatistics() {
+        RegionSnapshot current = snapshot;
+        List<Region> regions = current.getRegions();
         System.out.println("[RegionVisualizer] === Estadísticas de Regiones ===");
-        System.out.println("Total de regiones: " + regions.size());
+        System.out.println("Total de regiones: " + getRegionCount() + " (" + regions.size() + " en memoria)");
+        synchronized (writeLock) {
+            System.out.println("Almacenamiento: " + shards.describe());
+        }
+        for (Map.Entry<ResourceKey<Level>, RegionIndex> entry : current.getIndexes().entrySet()) {
+            System.out.println("Dimensión " + entry.getKey().location() + ": " + entry.getValue().describe());
+        }
         
         if (!regions.isEmpty()) {
             for (Region region : regions) {
                 BlockPos center = region.getCenter();
-                System.out.println("- " + region.getName() + " en " + center.getX() + ", " + center.getY() + ", " + center.getZ() + ", música: " + region.getMusicFile() + ", loopEnabled: " + region.isLoopEnabled());
+                System.out.println("- " + region.getName() + " (" + region.getDimension().location() + ") en " + center.getX() + ", " + center.getY() + ", " + center.getZ() + ", música: " + region.getMusicFile() + ", loopEnabled: " + region.isLoopEnabled());
+            }
+        }
+    }
+
+    /**
+     * Cambio en curso sobre la siguiente instantánea. Mantiene al día el catálogo de fragmentos,
+     * carga los fragmentos antes de tocar sus regiones (si no, al guardarlos se perdería lo
+     * que no estaba cargado) y marca lo que hay que guardar. Solo se usa bajo writeLock.
+     */
+    private final class Mutation implements RegionJournal.Target {
+        private final RegionSnapshot.Builder builder;
+        private boolean changed;
+
+        Mutation() {
+            this(snapshot.toBuilder());
+        }
+
+        Mutation(RegionSnapshot.Builder builder) {
+            this.builder = builder;
+        }
+
+        /**
+         * Si el fragmento no se puede leer lanza {@link UncheckedIOException}: el cambio que lo
+         * necesitaba se rechaza en lugar de guardar el fragmento sin sus regiones.
+         */
+        void ensureLoaded(RegionShardStore.ShardId shard) {
+            if (shard == null || shards.isResident(shard)) return;
+            List<Region> loaded;
+            try {
+                loaded = shards.load(shard, shardTick);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e.getMessage() + "; sus regiones no se pueden cargar ni modificar hasta que se pueda leer", e);
+            }
+            for (Region region : loaded) {
+                builder.put(region);
+            }
+            changed = true;
+        }
+
+        void ensureLoadedFor(String name) {
+            RegionShardStore.Entry entry = shards.get(name);
+            if (entry != null) ensureLoaded(entry.shard());
+        }
+
+        /**
+         * Agrega una región leída de los datos del mundo. Devuelve true si hubo que pasarla a
+         * un fragmento, es decir, si hay algo nuevo que guardar.
+         */
+        boolean restore(Region region) {
+            if (shardFor(region) != null) {
+                put(region);
+                return true;
             }
+            builder.put(region);
+            shards.restore(region);
+            changed = true;
+            return false;
+        }
+
+        @Override
+        public void put(Region region) {
+            RegionShardStore.Entry previous = shards.get(region.getName());
+            if (previous != null) ensureLoaded(previous.shard());
+            RegionShardStore.ShardId shard = shardFor(region);
+            ensureLoaded(shard);
+            builder.put(region);
+            shards.record(region, shard);
+
+            // Los datos del mundo solo cambian si la región se guarda completa o cambió el catálogo;
+            // editar una región dentro de su fragmento solo ensucia el fragmento.
+            boolean catalogChanged = previous == null || !Objects.equals(previous.shard(), shard) || !previous.name().equals(region.getName());
+            if (shard == null || catalogChanged) markDirty(region.getDimension());
+            if (previous != null && (previous.shard() == null || catalogChanged)) markDirty(previous.dimension());
+            changed = true;
+        }
+
+        @Override
+        public void remove(String name) {
+            RegionShardStore.Entry previous = shards.get(name);
+            if (previous == null) return;
+            ensureLoaded(previous.shard());
+            builder.remove(name);
+            shards.forget(name);
+            markDirty(previous.dimension());
+            changed = true;
+        }
+
+        @Override
+        public void clear() {
+            builder.clear();
+            shards.clear();
+            for (RegionSavedData data : savedData.values()) {
+                data.setDirty();
+            }
+            changed = true;
+        }
+
+        void publish() {
+            if (changed) snapshot = builder.build();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+package com.riburitu.regionvisualizer.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escritura de regiones en segundo plano. Cada pedido de guardado marca los cambios como
+ * pendientes y reprograma la escritura para cuando pase un rato sin cambios; así una ráfaga
+ * de ediciones termina en una sola escritura. Para que una edición continua no aplace el
+ * guardado para siempre, nunca se espera más de {@code maxDelayMillis} desde el primer
+ * cambio pendiente.
+ *
+ * Qué se escribe lo decide el {@link Writer} (el diario de {@link RegionManager}), que lee
+ * instantáneas inmutables sin bloquear al servidor. {@link #flush()} escribe lo pendiente
+ * en el hilo que lo llama y espera a que termine cualquier escritura en curso; se usa al
+ * detener el servidor.
+ */
+public class RegionSaveQueue {
+    @FunctionalInterface
+    public interface Writer {
+        /**
+         * @param flush true al detener el servidor: además de escribir lo pendiente, compactar y cerrar.
+         */
+        void write(boolean flush);
+    }
+
+    private final Writer writer;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RegionVisualizer-Save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Solo una escritura a la vez, venga del hilo de fondo o de flush().
+    private final Object ioLock = new Object();
+
+    private long quietMillis;
+    private long maxDelayMillis;
+
+    private boolean dirty;
+    private long firstPendingTime;
+    private ScheduledFuture<?> scheduled;
+
+    public RegionSaveQueue(Writer writer, long quietMillis, long maxDelayMillis) {
+        this.writer = writer;
+        configure(quietMillis, maxDelayMillis);
+    }
+
+    public synchronized void configure(long quietMillis, long maxDelayMillis) {
+        this.quietMillis = Math.max(0, quietMillis);
+        this.maxDelayMillis = Math.max(this.quietMillis, maxDelayMillis);
+    }
+
+    public synchronized void request() {
+        long now = System.currentTimeMillis();
+        if (!dirty) {
+            firstPendingTime = now;
+            dirty = true;
+        }
+
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        long delay = Math.min(quietMillis, Math.max(0, firstPendingTime + maxDelayMillis - now));
+        scheduled = executor.schedule(() -> writePending(false), delay, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Escribe ya lo pendiente y espera a que termine cualquier escritura en curso.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+        }
+        writePending(true);
+    }
+
+    private void writePending(boolean flush) {
+        synchronized (ioLock) {
+            synchronized (this) {
+                if (!dirty && !flush) return;
+                dirty = false;
+            }
+
+            long start = System.nanoTime();
+            writer.write(flush);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            if (elapsed > 50) {
+                System.out.println("[RegionVisualizer] Guardado de regiones lento: " + elapsed + " ms");
+            }
+        }
+    }
+}
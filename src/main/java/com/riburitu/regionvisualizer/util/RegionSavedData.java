@@ -0,0 +1,185 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice de regiones de una dimensión guardado con el mundo ({@code data/regionvisualizer_regions.dat}
+ * de cada dimensión): las regiones que ocupan varios fragmentos, completas, y los nombres de
+ * las regiones de cada fragmento (ver {@link RegionShardStore}). No guarda una copia propia:
+ * al guardar lee el estado de {@link RegionManager}, que la marca como sucia en cada cambio
+ * de esa dimensión. La escritura la hace Minecraft en el autoguardado, {@code /save-all} y
+ * al detener el servidor, junto con el resto del mundo, pero con temporal y reemplazo (ver
+ * {@link #save(File)}).
+ */
+public class RegionSavedData extends SavedData {
+    public static final String DATA_NAME = "regionvisualizer_regions";
+    // 1: todas las regiones completas. 2: completas solo las de varios fragmentos, más el catálogo.
+    private static final int FORMAT_VERSION = 2;
+
+    private final RegionManager regionManager;
+    private final ResourceKey<Level> dimension;
+    // Regiones y catálogo leídos del disco; RegionManager los toma una vez al cargar.
+    private List<Region> loaded;
+    private Map<Long, List<String>> loadedShards = Map.of();
+
+    public RegionSavedData(RegionManager regionManager, ResourceKey<Level> dimension) {
+        this.regionManager = regionManager;
+        this.dimension = dimension;
+    }
+
+    public static RegionSavedData load(CompoundTag tag, RegionManager regionManager, ResourceKey<Level> dimension) {
+        RegionSavedData data = new RegionSavedData(regionManager, dimension);
+        ListTag list = tag.getList("regions", Tag.TAG_COMPOUND);
+        data.loaded = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            try {
+                data.loaded.add(fromTag(list.getCompound(i), dimension));
+            } catch (Exception e) {
+                System.err.println("[RegionVisualizer] Región inválida en " + dimension.location() + " (entrada " + i + "): " + e.getMessage());
+            }
+        }
+        ListTag shards = tag.getList("shards", Tag.TAG_COMPOUND);
+        data.loadedShards = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            CompoundTag shard = shards.getCompound(i);
+            ListTag names = shard.getList("names", Tag.TAG_STRING);
+            List<String> shardNames = new ArrayList<>(names.size());
+            for (int j = 0; j < names.size(); j++) {
+                shardNames.add(names.getString(j));
+            }
+            data.loadedShards.put(ChunkPos.asLong(shard.getInt("x"), shard.getInt("z")), shardNames);
+        }
+        return data;
+    }
+
+    /**
+     * true si estos datos se leyeron de un archivo existente (aunque no tuviera regiones).
+     */
+    public boolean wasLoaded() {
+        return loaded != null;
+    }
+
+    public List<Region> takeLoaded() {
+        List<Region> regions = loaded != null ? loaded : List.of();
+        loaded = List.of();
+        return regions;
+    }
+
+    /**
+     * Nombres de las regiones de cada fragmento, por {@link ChunkPos#asLong(int, int)} del fragmento.
+     */
+    public Map<Long, List<String>> takeLoadedShards() {
+        Map<Long, List<String>> shards = loadedShards;
+        loadedShards = Map.of();
+        return shards;
+    }
+
+    public ResourceKey<Level> getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Como {@link SavedData#save(File)}, que escribe sobre el mismo archivo y lo da por guardado
+     * aunque falle, pero con un temporal que reemplaza al archivo. {@link RegionManager} vacía
+     * el diario cuando ningún índice queda sucio: si la escritura falla queda sucio y el diario
+     * se conserva, y un corte a mitad deja el índice anterior entero.
+     */
+    @Override
+    public void save(File file) {
+        if (!isDirty()) return;
+        // Se limpia antes de leer el estado: un cambio mientras se escribe lo vuelve a ensuciar.
+        setDirty(false);
+        CompoundTag root = new CompoundTag();
+        root.put("data", save(new CompoundTag()));
+        NbtUtils.addCurrentDataVersion(root);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            NbtIo.writeCompressed(root, bytes);
+            RegionShardStore.writeAtomically(file.toPath(), bytes.toByteArray());
+        } catch (IOException e) {
+            setDirty();
+            System.err.println("[RegionVisualizer] Error guardando " + file + ": " + e.getMessage() + "; el diario se conserva hasta el próximo guardado");
+        }
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag tag) {
+        ListTag list = new ListTag();
+        for (Region region : regionManager.getManifestRegions(dimension)) {
+            list.add(toTag(region, dimension));
+        }
+        ListTag shards = new ListTag();
+        for (Map.Entry<Long, List<String>> entry : regionManager.getShardCatalog(dimension).entrySet()) {
+            CompoundTag shard = new CompoundTag();
+            shard.putInt("x", ChunkPos.getX(entry.getKey()));
+            shard.putInt("z", ChunkPos.getZ(entry.getKey()));
+            ListTag names = new ListTag();
+            for (String name : entry.getValue()) {
+                names.add(StringTag.valueOf(name));
+            }
+            shard.put("names", names);
+            shards.add(shard);
+        }
+        tag.putInt("version", FORMAT_VERSION);
+        tag.put("regions", list);
+        tag.put("shards", shards);
+        return tag;
+    }
+
+    private static CompoundTag toTag(Region region, ResourceKey<Level> dimension) {
+        CompoundTag tag = new CompoundTag();
+        tag.putString("name", region.getName());
+        // Solo las regiones de otra dimensión guardadas aquí llevan la suya.
+        if (!region.getDimension().equals(dimension)) {
+            tag.putString("dimension", region.getDimension().location().toString());
+        }
+        BlockPos pos1 = region.getPos1();
+        BlockPos pos2 = region.getPos2();
+        tag.putIntArray("pos1", new int[] {pos1.getX(), pos1.getY(), pos1.getZ()});
+        tag.putIntArray("pos2", new int[] {pos2.getX(), pos2.getY(), pos2.getZ()});
+        if (region.getMusicFile() != null) {
+            tag.putString("musicFile", region.getMusicFile());
+        }
+        tag.putBoolean("loopEnabled", region.isLoopEnabled());
+        tag.putBoolean("fadeEnabled", region.isFadeEnabled());
+        if (region.getPriority() != 0) {
+            tag.putInt("priority", region.getPriority());
+        }
+        return tag;
+    }
+
+    private static Region fromTag(CompoundTag tag, ResourceKey<Level> dimension) {
+        int[] pos1 = tag.getIntArray("pos1");
+        int[] pos2 = tag.getIntArray("pos2");
+        if (!tag.contains("name", Tag.TAG_STRING) || pos1.length != 3 || pos2.length != 3) {
+            throw new IllegalArgumentException("faltan name, pos1 o pos2");
+        }
+        if (tag.contains("dimension", Tag.TAG_STRING)) {
+            dimension = ResourceKey.create(Registries.DIMENSION, new ResourceLocation(tag.getString("dimension")));
+        }
+        return new Region(tag.getString("name"), dimension,
+            new BlockPos(pos1[0], pos1[1], pos1[2]), new BlockPos(pos2[0], pos2[1], pos2[2]),
+            tag.contains("musicFile", Tag.TAG_STRING) ? tag.getString("musicFile") : null,
+            tag.getBoolean("loopEnabled"), tag.getBoolean("fadeEnabled"), tag.getInt("priority"));
+    }
+}
@@ -0,0 +1,443 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reparto de las regiones en fragmentos de 512x512 bloques por dimensión, como los .mca de
+ * Minecraft. Cada región que cabe entera en un fragmento se guarda en
+ * {@code regionvisualizer/shards/<dimensión>/r.<x>.<z>.dat} (con {@link RegionBinaryFormat})
+ * y solo está en memoria mientras haya jugadores cerca. Las que ocupan varios fragmentos
+ * se guardan completas en {@link RegionSavedData} y están siempre cargadas.
+ *
+ * El catálogo (nombre, dimensión y fragmento de cada región) está siempre en memoria y se
+ * guarda con {@link RegionSavedData}; es lo que decide qué regiones pertenecen a cada
+ * fragmento. No es seguro entre hilos: {@link RegionManager} lo usa bajo su writeLock.
+ */
+public class RegionShardStore {
+    public static final int SHARD_SHIFT = 9; // 512 bloques
+    private static final long RETRY_TICKS = 600;
+
+    /**
+     * Un fragmento de una dimensión; {@code key} es {@link ChunkPos#asLong(int, int)} de sus coordenadas.
+     */
+    public record ShardId(ResourceKey<Level> dimension, long key) {
+        public int x() {
+            return ChunkPos.getX(key);
+        }
+
+        public int z() {
+            return ChunkPos.getZ(key);
+        }
+    }
+
+    /**
+     * Entrada del catálogo; {@code shard} es null para las regiones que se guardan completas.
+     */
+    public record Entry(String name, ResourceKey<Level> dimension, ShardId shard) {
+    }
+
+    private final Map<String, Entry> catalog = new HashMap<>();
+    private final Map<ShardId, Set<String>> shardNames = new HashMap<>();
+    private final Set<ShardId> resident = new HashSet<>();
+    private final Set<ShardId> dirty = new HashSet<>();
+    // Último tick en que algún jugador estuvo cerca de cada fragmento cargado.
+    private final Map<ShardId, Long> lastNeeded = new HashMap<>();
+    // Tick del último intento fallido de leer cada fragmento.
+    private final Map<ShardId, Long> failedAt = new HashMap<>();
+    private Path folder;
+
+    /**
+     * Fragmento en el que se guarda la región, o null si ocupa más de uno.
+     */
+    public static ShardId shardOf(Region region) {
+        int x = region.getMinX() >> SHARD_SHIFT;
+        int z = region.getMinZ() >> SHARD_SHIFT;
+        if (x != region.getMaxX() >> SHARD_SHIFT || z != region.getMaxZ() >> SHARD_SHIFT) return null;
+        return new ShardId(region.getDimension(), ChunkPos.asLong(x, z));
+    }
+
+    public static ShardId shardAt(ResourceKey<Level> dimension, int blockX, int blockZ) {
+        return new ShardId(dimension, ChunkPos.asLong(blockX >> SHARD_SHIFT, blockZ >> SHARD_SHIFT));
+    }
+
+    /**
+     * Vacía todo y fija la carpeta de los fragmentos; se llama al cargar otro mundo.
+     */
+    public void reset(Path folder) {
+        this.folder = folder;
+        catalog.clear();
+        shardNames.clear();
+        resident.clear();
+        dirty.clear();
+        lastNeeded.clear();
+        failedAt.clear();
+    }
+
+    public Entry get(String name) {
+        return catalog.get(RegionSnapshot.normalizeName(name));
+    }
+
+    public boolean contains(String name) {
+        return catalog.containsKey(RegionSnapshot.normalizeName(name));
+    }
+
+    public int size() {
+        return catalog.size();
+    }
+
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>(catalog.size());
+        for (Entry entry : catalog.values()) {
+            names.add(entry.name());
+        }
+        names.sort(String.CASE_INSENSITIVE_ORDER);
+        return names;
+    }
+
+    public Collection<Entry> entries() {
+        return catalog.values();
+    }
+
+    /**
+     * Anota la región en el catálogo (reemplazando la entrada anterior con el mismo nombre) y
+     * marca como sucios los fragmentos afectados.
+     */
+    public void record(Region region, ShardId shard) {
+        forget(region.getName());
+        String key = RegionSnapshot.normalizeName(region.getName());
+        catalog.put(key, new Entry(region.getName(), region.getDimension(), shard));
+        if (shard != null) {
+            shardNames.computeIfAbsent(shard, k -> new HashSet<>()).add(key);
+            dirty.add(shard);
+        }
+    }
+
+    /**
+     * Anota un fragmento ya guardado tal como lo dice el catálogo en disco: ni cargado ni sucio.
+     */
+    public void restore(ShardId shard, List<String> names) {
+        Set<String> keys = shardNames.computeIfAbsent(shard, k -> new HashSet<>());
+        for (String name : names) {
+            String key = RegionSnapshot.normalizeName(name);
+            if (catalog.containsKey(key)) continue;
+            catalog.put(key, new Entry(name, shard.dimension(), shard));
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Anota una región guardada completa (sin fragmento) tal como estaba en disco.
+     */
+    public void restore(Region region) {
+        catalog.putIfAbsent(RegionSnapshot.normalizeName(region.getName()), new Entry(region.getName(), region.getDimension(), null));
+    }
+
+    public Entry forget(String name) {
+        String key = RegionSnapshot.normalizeName(name);
+        Entry entry = catalog.remove(key);
+        if (entry != null && entry.shard() != null) {
+            Set<String> names = shardNames.get(entry.shard());
+            if (names != null) names.remove(key);
+            dirty.add(entry.shard());
+        }
+        return entry;
+    }
+
+    /**
+     * Olvida todas las regiones. Los fragmentos conocidos quedan cargados (vacíos) y sucios,
+     * así el próximo guardado borra sus archivos y nadie vuelve a leer lo que tenían.
+     */
+    public void clear() {
+        catalog.clear();
+        for (Map.Entry<ShardId, Set<String>> entry : shardNames.entrySet()) {
+            entry.getValue().clear();
+            resident.add(entry.getKey());
+            dirty.add(entry.getKey());
+        }
+    }
+
+    public boolean isKnown(ShardId shard) {
+        Set<String> names = shardNames.get(shard);
+        return names != null && !names.isEmpty();
+    }
+
+    public boolean isResident(ShardId shard) {
+        return resident.contains(shard);
+    }
+
+    public void touch(ShardId shard, long tick) {
+        if (resident.contains(shard)) lastNeeded.put(shard, tick);
+    }
+
+    /**
+     * Lee el fragmento del disco y lo marca como cargado, ver {@link #install}. Si el archivo
+     * no se puede leer no se toca nada: el fragmento sigue sin cargar, con sus nombres en el
+     * catálogo, y se puede reintentar (ver {@link #canRetry}).
+     */
+    public List<Region> load(ShardId shard, long tick) throws IOException {
+        List<Region> read;
+        try {
+            read = read(fileOf(shard));
+        } catch (IOException e) {
+            markFailed(shard, tick);
+            throw e;
+        }
+        return install(shard, read, tick);
+    }
+
+    /**
+     * Todas las regiones del archivo de un fragmento, o ninguna si no existe. No toca el
+     * estado: se puede llamar fuera del writeLock y aplicar después con {@link #install}.
+     */
+    public static List<Region> read(Path file) throws IOException {
+        List<Region> regions = new ArrayList<>();
+        if (!Files.exists(file)) return regions;
+        try {
+            RegionBinaryFormat.read(Files.readAllBytes(file), regions::add);
+        } catch (IOException e) {
+            throw new IOException("No se pudo leer el fragmento " + file + ": " + e.getMessage(), e);
+        }
+        return regions;
+    }
+
+    /**
+     * Marca como cargado un fragmento ya leído y devuelve sus regiones. El catálogo manda: lo
+     * que el archivo tenga de más es de un guardado a medias y se descarta, y los nombres del
+     * catálogo que no aparecen en el archivo se olvidan (si venían de un cambio sin guardar,
+     * el diario los vuelve a agregar). En ambos casos el fragmento queda sucio para reescribirlo.
+     */
+    public List<Region> install(ShardId shard, List<Region> read, long tick) {
+        Set<String> names = shardNames.getOrDefault(shard, Set.of());
+        List<Region> regions = new ArrayList<>();
+        Set<String> found = new HashSet<>();
+        boolean stale = false;
+        for (Region region : read) {
+            String key = RegionSnapshot.normalizeName(region.getName());
+            if (names.contains(key) && shard.equals(shardOf(region)) && found.add(key)) {
+                regions.add(region);
+            } else {
+                stale = true;
+            }
+        }
+
+        failedAt.remove(shard);
+        resident.add(shard);
+        lastNeeded.put(shard, tick);
+        if (stale) dirty.add(shard);
+        if (found.size() < names.size()) {
+            System.err.println("[RegionVisualizer] Faltan " + (names.size() - found.size()) + " regiones del catálogo en " + fileOf(shard));
+            Iterator<String> iterator = names.iterator();
+            while (iterator.hasNext()) {
+                String key = iterator.next();
+                if (found.contains(key)) continue;
+                iterator.remove();
+                catalog.remove(key);
+            }
+            dirty.add(shard);
+        }
+        return regions;
+    }
+
+    public void markFailed(ShardId shard, long tick) {
+        failedAt.put(shard, tick);
+    }
+
+    /**
+     * false durante {@code RETRY_TICKS} ticks después de que el fragmento no se pudo leer, para
+     * no reintentarlo (ni llenar el registro) en cada revisión de los jugadores cercanos.
+     */
+    public boolean canRetry(ShardId shard, long tick) {
+        Long failed = failedAt.get(shard);
+        return failed == null || tick - failed >= RETRY_TICKS;
+    }
+
+    /**
+     * Quita de la lista de cargados los fragmentos limpios que nadie necesitó desde
+     * {@code idleTicks} ticks y devuelve los nombres de sus regiones para sacarlas de memoria.
+     */
+    public List<String> evictIdle(long tick, long idleTicks) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<ShardId> iterator = resident.iterator();
+        while (iterator.hasNext()) {
+            ShardId shard = iterator.next();
+            if (dirty.contains(shard) || tick - lastNeeded.getOrDefault(shard, tick) < idleTicks) continue;
+            iterator.remove();
+            lastNeeded.remove(shard);
+            Set<String> names = shardNames.get(shard);
+            if (names == null) continue;
+            if (names.isEmpty()) {
+                shardNames.remove(shard);
+            } else {
+                evicted.addAll(names);
+            }
+        }
+        return evicted;
+    }
+
+    public boolean hasDirty() {
+        return !dirty.isEmpty();
+    }
+
+    public boolean hasDirty(ResourceKey<Level> dimension) {
+        for (ShardId shard : dirty) {
+            if (shard.dimension().equals(dimension)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Nombres de las regiones de cada fragmento de la dimensión, para guardar el catálogo.
+     */
+    public Map<Long, List<String>> getCatalog(ResourceKey<Level> dimension) {
+        Map<Long, List<String>> result = new HashMap<>();
+        for (Map.Entry<ShardId, Set<String>> entry : shardNames.entrySet()) {
+            if (!entry.getKey().dimension().equals(dimension) || entry.getValue().isEmpty()) continue;
+            List<String> names = new ArrayList<>(entry.getValue().size());
+            for (String key : entry.getValue()) {
+                names.add(catalog.get(key).name());
+            }
+            result.put(entry.getKey().key(), names);
+        }
+        return result;
+    }
+
+    /**
+     * Serializa los fragmentos sucios de la dimensión y los da por limpios. Lo devuelto se
+     * escribe después con {@link #write(List)}, fuera del bloqueo; un fragmento sin regiones
+     * se devuelve con contenido null para borrar su archivo.
+     */
+    public List<PendingWrite> takeDirty(ResourceKey<Level> dimension, RegionSnapshot snapshot) throws IOException {
+        List<PendingWrite> writes = new ArrayList<>();
+        Iterator<ShardId> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            ShardId shard = iterator.next();
+            if (!shard.dimension().equals(dimension)) continue;
+            iterator.remove();
+            // Sin cargar no se sabe qué tiene: reescribirlo perdería sus regiones.
+            if (!resident.contains(shard)) continue;
+
+            List<Region> regions = new ArrayList<>();
+            for (String key : shardNames.getOrDefault(shard, Set.of())) {
+                snapshot.getByName(key).ifPresent(regions::add);
+            }
+            byte[] data = null;
+            if (!regions.isEmpty()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                RegionBinaryFormat.write(bytes, regions);
+                data = bytes.toByteArray();
+            }
+            writes.add(new PendingWrite(shard, fileOf(shard), data));
+        }
+        return writes;
+    }
+
+    /**
+     * Vuelve a marcar como sucio un fragmento que no se pudo escribir.
+     */
+    public void markDirty(ShardId shard) {
+        dirty.add(shard);
+    }
+
+    /**
+     * Escribe los fragmentos cada uno en un temporal que luego reemplaza al archivo real.
+     * Devuelve los que fallaron.
+     */
+    public static List<PendingWrite> write(List<PendingWrite> writes) {
+        List<PendingWrite> failed = new ArrayList<>();
+        for (PendingWrite write : writes) {
+            try {
+                if (write.data() == null) {
+                    Files.deleteIfExists(write.file());
+                    continue;
+                }
+                writeAtomically(write.file(), write.data());
+            } catch (IOException e) {
+                System.err.println("[RegionVisualizer] Error guardando el fragmento " + write.file() + ": " + e.getMessage());
+                failed.add(write);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Escribe en un temporal sincronizado con el disco y lo mueve sobre el archivo: un corte a
+     * mitad de escritura deja el archivo anterior entero.
+     */
+    static void writeAtomically(Path file, byte[] data) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            out.write(data);
+            out.getFD().sync();
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Fragmentos con regiones que no están cargados, con una copia de sus nombres, para
+     * leerlos fuera del writeLock con {@link #readDetached(UnloadedShard)}.
+     */
+    public List<UnloadedShard> unloadedShards() {
+        List<UnloadedShard> unloaded = new ArrayList<>();
+        for (Map.Entry<ShardId, Set<String>> entry : shardNames.entrySet()) {
+            if (entry.getValue().isEmpty() || resident.contains(entry.getKey())) continue;
+            unloaded.add(new UnloadedShard(entry.getKey(), fileOf(entry.getKey()), Set.copyOf(entry.getValue())));
+        }
+        return unloaded;
+    }
+
+    /**
+     * Lee las regiones de un fragmento sin cargarlo; con el mismo criterio que {@link #load},
+     * solo las que el catálogo pone en ese fragmento.
+     */
+    public static List<Region> readDetached(UnloadedShard unloaded) throws IOException {
+        List<Region> regions = new ArrayList<>();
+        if (!Files.exists(unloaded.file())) return regions;
+        Set<String> found = new HashSet<>();
+        RegionBinaryFormat.read(Files.readAllBytes(unloaded.file()), region -> {
+            String key = RegionSnapshot.normalizeName(region.getName());
+            if (unloaded.names().contains(key) && unloaded.shard().equals(shardOf(region)) && found.add(key)) {
+                regions.add(region);
+            }
+        });
+        return regions;
+    }
+
+    public String describe() {
+        return "fragmentos: " + shardNames.size() + " conocidos, " + resident.size() + " cargados, " + dirty.size() + " sin guardar";
+    }
+
+    Path fileOf(ShardId shard) {
+        return folder.resolve(shard.dimension().location().getNamespace())
+            .resolve(shard.dimension().location().getPath())
+            .resolve("r." + shard.x() + "." + shard.z() + ".dat");
+    }
+
+    public record PendingWrite(ShardId shard, Path file, byte[] data) {
+    }
+
+    public record UnloadedShard(ShardId shard, Path file, Set<String> names) {
+    }
+}
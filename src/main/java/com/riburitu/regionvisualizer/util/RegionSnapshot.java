@@ -0,0 +1,328 @@
+package com.riburitu.regionvisualizer.util;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Vista inmutable de todas las regiones y sus índices. {@link RegionManager} publica una
+ * instantánea nueva con cada cambio, así cualquier hilo puede leer una vista coherente
+ * sin bloqueos mientras el escritor prepara la siguiente con {@link Builder}.
+ */
+public final class RegionSnapshot {
+    private static final RegionIndex EMPTY_INDEX = new RegionSpatialIndex();
+    public static final RegionSnapshot EMPTY = new RegionSnapshot(
+        Collections.emptyList(), Collections.emptyMap(), Int2ObjectMaps.emptyMap(), Collections.emptyMap(),
+        Collections.emptyMap(), RegionIndexType.GRID, 0, 1);
+
+    private final List<Region> regions;
+    private final Map<String, Region> regionsByName;
+    private final Int2ObjectMap<Region> regionsById;
+    private final Map<ResourceKey<Level>, RegionIndex> indexes;
+    private final Map<ResourceKey<Level>, ChangeLog> changes;
+    private final RegionIndexType indexType;
+    private final int revision;
+    // Siguiente id libre; nunca se reutilizan, así un id viejo no puede apuntar a otra región.
+    private final int nextId;
+
+    /**
+     * Cambios de una dimensión: cada instantánea que toca sus regiones agrega un eslabón con
+     * los ids tocados y el siguiente número de secuencia. Solo se guardan los últimos
+     * {@link #MAX_DEPTH} eslabones; un eslabón sin ids indica que la dimensión se vació entera.
+     */
+    private record ChangeLog(long sequence, int[] ids, ChangeLog previous, int depth) {
+        private static final int MAX_DEPTH = 64;
+
+        static ChangeLog append(ChangeLog head, int[] ids) {
+            long sequence = head != null ? head.sequence + 1 : 1;
+            ChangeLog previous = head != null && head.depth >= MAX_DEPTH ? trim(head, MAX_DEPTH / 2) : head;
+            return new ChangeLog(sequence, ids, previous, previous != null ? previous.depth + 1 : 1);
+        }
+
+        private static ChangeLog trim(ChangeLog log, int keep) {
+            if (log == null || keep == 0) return null;
+            ChangeLog previous = trim(log.previous, keep - 1);
+            return new ChangeLog(log.sequence, log.ids, previous, previous != null ? previous.depth + 1 : 1);
+        }
+    }
+
+    private RegionSnapshot(List<Region> regions, Map<String, Region> regionsByName, Int2ObjectMap<Region> regionsById,
+                           Map<ResourceKey<Level>, RegionIndex> indexes, Map<ResourceKey<Level>, ChangeLog> changes,
+                           RegionIndexType indexType, int revision, int nextId) {
+        this.regions = regions;
+        this.regionsByName = regionsByName;
+        this.regionsById = regionsById;
+        this.indexes = indexes;
+        this.changes = changes;
+        this.indexType = indexType;
+        this.revision = revision;
+        this.nextId = nextId;
+    }
+
+    public List<Region> getRegions() {
+        return regions;
+    }
+
+    public int size() {
+        return regions.size();
+    }
+
+    /**
+     * Número que cambia con cada instantánea publicada; sirve para invalidar resultados cacheados.
+     */
+    public int getRevision() {
+        return revision;
+    }
+
+    public Optional<Region> getByName(String name) {
+        return Optional.ofNullable(regionsByName.get(normalizeName(name)));
+    }
+
+    /**
+     * Región con el id dado (ver {@link Region#getId()}), o null si ya no existe.
+     */
+    public Region getById(int id) {
+        return regionsById.get(id);
+    }
+
+    public RegionIndexType getIndexType() {
+        return indexType;
+    }
+
+    public Optional<Region> getRegionContaining(ResourceKey<Level> dimension, BlockPos pos) {
+        RegionIndex index = indexes.get(dimension);
+        return index != null ? index.find(pos) : Optional.empty();
+    }
+
+    public RegionLookup lookup(ResourceKey<Level> dimension, BlockPos pos) {
+        RegionIndex index = indexes.get(dimension);
+        return (index != null ? index : EMPTY_INDEX).lookup(pos);
+    }
+
+    Map<ResourceKey<Level>, RegionIndex> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Número que sube cada vez que se publican cambios en las regiones de esa dimensión; 0 si
+     * nunca cambiaron.
+     */
+    public long getChangeSequence(ResourceKey<Level> dimension) {
+        ChangeLog log = changes.get(dimension);
+        return log != null ? log.sequence() : 0;
+    }
+
+    /**
+     * Ids de las regiones de la dimensión que se agregaron, cambiaron, se quitaron o se
+     * movieron a otra dimensión desde la secuencia {@code since}. Null si ese tramo ya no se
+     * conserva o incluye un vaciado, y hay que comparar la dimensión entera.
+     */
+    public IntSet changedSince(ResourceKey<Level> dimension, long since) {
+        IntSet ids = new IntOpenHashSet();
+        ChangeLog log = changes.get(dimension);
+        long expected = log != null ? log.sequence() : 0;
+        for (; log != null && log.sequence() > since; log = log.previous()) {
+            if (log.ids() == null) return null;
+            for (int id : log.ids()) {
+                ids.add(id);
+            }
+            expected = log.sequence() - 1;
+        }
+        return expected == since ? ids : null;
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    // Clave de los nombres: las regiones no distinguen mayúsculas de minúsculas.
+    static String normalizeName(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Prepara la siguiente instantánea a partir de una existente. Los índices de las
+     * dimensiones que no se tocan se comparten con la instantánea anterior.
+     */
+    public static final class Builder {
+        private final List<Region> regions;
+        // Regiones reemplazadas o quitadas que siguen en la lista; se sacan todas juntas en
+        // build(), así cada cambio no recorre la lista. Por identidad: withId crea siempre una copia.
+        private final Set<Region> removedRegions = new ReferenceOpenHashSet<>();
+        private final Map<String, Region> regionsByName;
+        private final Int2ObjectMap<Region> regionsById;
+        private final Map<ResourceKey<Level>, RegionIndex> indexes;
+        private final Set<ResourceKey<Level>> ownedIndexes = new HashSet<>();
+        private final Map<ResourceKey<Level>, ChangeLog> changes;
+        // Ids tocados por dimensión desde el último build(); las dimensiones vaciadas no anotan ids.
+        private final Map<ResourceKey<Level>, IntSet> changedIds = new HashMap<>();
+        private final Set<ResourceKey<Level>> clearedDimensions = new HashSet<>();
+        private RegionIndexType indexType;
+        // Tras clear() o un cambio de tipo los índices no se tocan región por región: se construyen enteros en build().
+        private boolean bulk;
+        private final int revision;
+        private int nextId;
+
+        private Builder(RegionSnapshot base) {
+            this.regions = new ArrayList<>(base.regions);
+            this.regionsByName = new HashMap<>(base.regionsByName);
+            this.regionsById = new Int2ObjectOpenHashMap<>(base.regionsById);
+            this.indexes = new HashMap<>(base.indexes);
+            this.changes = new HashMap<>(base.changes);
+            this.indexType = base.indexType;
+            this.revision = base.revision + 1;
+            this.nextId = base.nextId;
+        }
+
+        public boolean contains(String name) {
+            return regionsByName.containsKey(normalizeName(name));
+        }
+
+        public Optional<Region> get(String name) {
+            return Optional.ofNullable(regionsByName.get(normalizeName(name)));
+        }
+
+        /**
+         * Agrega la región o reemplaza la que tenga el mismo nombre. Devuelve la anterior, si había.
+         * La región reemplazante hereda el id de la anterior; una región nueva recibe uno nuevo.
+         */
+        public Region put(Region region) {
+            String key = normalizeName(region.getName());
+            Region previous = regionsByName.get(key);
+            region = region.withId(previous != null ? previous.getId() : nextId++);
+            regionsByName.put(key, region);
+            regionsById.put(region.getId(), region);
+            if (previous != null) {
+                removedRegions.add(previous);
+                if (!bulk) writableIndex(previous.getDimension()).remove(previous);
+            }
+            regions.add(region);
+            if (!bulk) writableIndex(region.getDimension()).insert(region);
+            markChanged(region.getDimension(), region.getId());
+            if (previous != null && !previous.getDimension().equals(region.getDimension())) {
+                markChanged(previous.getDimension(), previous.getId());
+            }
+            return previous;
+        }
+
+        public Region remove(String name) {
+            Region removed = regionsByName.remove(normalizeName(name));
+            if (removed != null) {
+                regionsById.remove(removed.getId());
+                removedRegions.add(removed);
+                if (!bulk) writableIndex(removed.getDimension()).remove(removed);
+                markChanged(removed.getDimension(), removed.getId());
+            }
+            return removed;
+        }
+
+        public void clear() {
+            // Toda dimensión con regiones ya tiene su registro de cambios o cambios sin publicar.
+            clearedDimensions.addAll(changes.keySet());
+            clearedDimensions.addAll(changedIds.keySet());
+            changedIds.clear();
+            regions.clear();
+            removedRegions.clear();
+            regionsByName.clear();
+            regionsById.clear();
+            indexes.clear();
+            ownedIndexes.clear();
+            bulk = true;
+        }
+
+        /**
+         * Cambia la implementación de los índices; se reconstruyen todos al llamar a {@link #build()}.
+         */
+        public void setIndexType(RegionIndexType type) {
+            if (type == indexType) return;
+            indexType = type;
+            indexes.clear();
+            ownedIndexes.clear();
+            bulk = true;
+        }
+
+        /**
+         * Deja de actualizar los índices en cada cambio y los reconstruye de una vez en
+         * {@link #build()}; conviene antes de agregar muchas regiones juntas.
+         */
+        public void rebuildIndexes() {
+            indexes.clear();
+            ownedIndexes.clear();
+            bulk = true;
+        }
+
+        private void markChanged(ResourceKey<Level> dimension, int id) {
+            if (!clearedDimensions.contains(dimension)) {
+                changedIds.computeIfAbsent(dimension, k -> new IntOpenHashSet()).add(id);
+            }
+        }
+
+        private RegionIndex writableIndex(ResourceKey<Level> dimension) {
+            if (ownedIndexes.add(dimension)) {
+                RegionIndex base = indexes.get(dimension);
+                indexes.put(dimension, base != null ? base.copy() : indexType.create());
+            }
+            return indexes.get(dimension);
+        }
+
+        public RegionSnapshot build() {
+            if (!removedRegions.isEmpty()) {
+                regions.removeIf(removedRegions::contains);
+                removedRegions.clear();
+            }
+            if (bulk) {
+                Map<ResourceKey<Level>, List<Region>> byDimension = new HashMap<>();
+                for (Region region : regions) {
+                    byDimension.computeIfAbsent(region.getDimension(), k -> new ArrayList<>()).add(region);
+                }
+                indexes.clear();
+                for (Map.Entry<ResourceKey<Level>, List<Region>> entry : byDimension.entrySet()) {
+                    indexes.put(entry.getKey(), indexType.build(entry.getValue()));
+                }
+                bulk = false;
+            } else {
+                // Un BVH con demasiados cambios sueltos se reconstruye antes de publicarlo.
+                for (ResourceKey<Level> dimension : ownedIndexes) {
+                    if (indexes.get(dimension) instanceof RegionBvhIndex bvh && bvh.needsRebuild()) {
+                        indexes.put(dimension, bvh.rebuilt());
+                    }
+                }
+            }
+            // Los índices pasan a ser de la instantánea publicada: si el builder se sigue usando, se vuelven a copiar.
+            ownedIndexes.clear();
+            for (ResourceKey<Level> dimension : clearedDimensions) {
+                changes.put(dimension, ChangeLog.append(changes.get(dimension), null));
+            }
+            for (Map.Entry<ResourceKey<Level>, IntSet> entry : changedIds.entrySet()) {
+                changes.put(entry.getKey(), ChangeLog.append(changes.get(entry.getKey()), entry.getValue().toIntArray()));
+            }
+            clearedDimensions.clear();
+            changedIds.clear();
+            return new RegionSnapshot(
+                Collections.unmodifiableList(new ArrayList<>(regions)),
+                Collections.unmodifiableMap(new HashMap<>(regionsByName)),
+                Int2ObjectMaps.unmodifiable(new Int2ObjectOpenHashMap<>(regionsById)),
+                Collections.unmodifiableMap(new HashMap<>(indexes)),
+                Collections.unmodifiableMap(new HashMap<>(changes)),
+                indexType,
+                revision,
+                nextId);
+        }
+    }
+}
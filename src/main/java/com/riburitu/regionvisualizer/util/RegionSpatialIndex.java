@@ -0,0 +1,218 @@
+package com.riburitu.regionvisualizer.util;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Índice espacial de regiones agrupadas por chunk. Cada celda (columna de 16x16 bloques)
+ * guarda las regiones que la solapan, así una búsqueda puntual solo revisa los pocos
+ * candidatos de su celda en lugar de todas las regiones.
+ *
+ * Cada celda es un {@link RegionBoundsStore} inmutable: insertar o quitar lo reemplaza por
+ * una copia. Gracias a eso {@link #copy()} es barato y un índice ya publicado en una
+ * {@link RegionSnapshot} puede leerse desde cualquier hilo sin bloqueos.
+ */
+public class RegionSpatialIndex implements RegionIndex {
+    // Regiones que cubren más chunks que esto se guardan aparte para no inflar el mapa de celdas.
+    private static final int MAX_CELLS_PER_REGION = 4096;
+
+    private final Map<Long, RegionBoundsStore> cells;
+    private RegionBoundsStore oversized;
+    private int size;
+
+    public RegionSpatialIndex() {
+        this.cells = new HashMap<>();
+        this.oversized = RegionBoundsStore.EMPTY;
+    }
+
+    private RegionSpatialIndex(RegionSpatialIndex other) {
+        // Copia superficial: las celdas se comparten porque nunca se modifican.
+        this.cells = new HashMap<>(other.cells);
+        this.oversized = other.oversized;
+        this.size = other.size;
+    }
+
+    /**
+     * Construye la rejilla de una vez: agrupa primero en listas y crea cada celda una sola vez.
+     */
+    public static RegionSpatialIndex build(List<Region> regions) {
+        Map<Long, List<Region>> grouped = new HashMap<>();
+        List<Region> big = new ArrayList<>();
+        for (Region region : regions) {
+            long[] keys = cellKeys(region);
+            if (keys == null) {
+                big.add(region);
+                continue;
+            }
+            for (long key : keys) {
+                grouped.computeIfAbsent(key, k -> new ArrayList<>(2)).add(region);
+            }
+        }
+
+        RegionSpatialIndex index = new RegionSpatialIndex();
+        for (Map.Entry<Long, List<Region>> entry : grouped.entrySet()) {
+            index.cells.put(entry.getKey(), RegionBoundsStore.of(entry.getValue()));
+        }
+        index.oversized = RegionBoundsStore.of(big);
+        index.size = regions.size();
+        return index;
+    }
+
+    @Override
+    public RegionSpatialIndex copy() {
+        return new RegionSpatialIndex(this);
+    }
+
+    @Override
+    public void insert(Region region) {
+        if (region == null) return;
+        size++;
+        long[] keys = cellKeys(region);
+        if (keys == null) {
+            oversized = oversized.with(region);
+            return;
+        }
+        for (long key : keys) {
+            RegionBoundsStore bucket = cells.get(key);
+            cells.put(key, (bucket != null ? bucket : RegionBoundsStore.EMPTY).with(region));
+        }
+    }
+
+    @Override
+    public boolean remove(Region region) {
+        long[] keys = cellKeys(region);
+        if (keys == null) {
+            RegionBoundsStore updated = oversized.without(region);
+            boolean removed = updated != oversized;
+            oversized = updated;
+            if (removed) size--;
+            return removed;
+        }
+        boolean removed = false;
+        for (long key : keys) {
+            RegionBoundsStore bucket = cells.get(key);
+            if (bucket == null) continue;
+            RegionBoundsStore updated = bucket.without(region);
+            if (updated == bucket) continue;
+            removed = true;
+            if (updated.isEmpty()) {
+                cells.remove(key);
+            } else {
+                cells.put(key, updated);
+            }
+        }
+        if (removed) size--;
+        return removed;
+    }
+
+    // Celdas que cubre la región, o null si son demasiadas y debe ir a la lista aparte.
+    private static long[] cellKeys(Region region) {
+        int minCX = SectionPos.blockToSectionCoord(region.getMinX());
+        int maxCX = SectionPos.blockToSectionCoord(region.getMaxX());
+        int minCZ = SectionPos.blockToSectionCoord(region.getMinZ());
+        int maxCZ = SectionPos.blockToSectionCoord(region.getMaxZ());
+
+        long count = (long) (maxCX - minCX + 1) * (maxCZ - minCZ + 1);
+        if (count > MAX_CELLS_PER_REGION) return null;
+
+        long[] keys = new long[(int) count];
+        int i = 0;
+        for (int cx = minCX; cx <= maxCX; cx++) {
+            for (int cz = minCZ; cz <= maxCZ; cz++) {
+                keys[i++] = ChunkPos.asLong(cx, cz);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public Optional<Region> find(BlockPos pos) {
+        int x = pos.getX(), y = pos.getY(), z = pos.getZ();
+        RegionBoundsStore bucket = cells.get(ChunkPos.asLong(
+            SectionPos.blockToSectionCoord(x),
+            SectionPos.blockToSectionCoord(z)));
+        Region found = bucket != null ? bucket.find(x, y, z) : null;
+        Region big = oversized.find(x, y, z);
+        if (big != null && big.outranks(found)) {
+            found = big;
+        }
+        return Optional.ofNullable(found);
+    }
+
+    @Override
+    public RegionLookup lookup(BlockPos pos) {
+        RegionLookup.Builder lookup = new RegionLookup.Builder(pos);
+        RegionBoundsStore bucket = cells.get(ChunkPos.asLong(
+            SectionPos.blockToSectionCoord(pos.getX()),
+            SectionPos.blockToSectionCoord(pos.getZ())));
+        if (bucket != null) {
+            for (int i = 0; i < bucket.size(); i++) {
+                lookup.accept(bucket.get(i));
+            }
+        }
+        for (int i = 0; i < oversized.size(); i++) {
+            lookup.accept(oversized.get(i));
+        }
+        return lookup.build();
+    }
+
+    @Override
+    public List<Region> query(BoundingBox box) {
+        Set<Region> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        int minCX = SectionPos.blockToSectionCoord(box.minX());
+        int maxCX = SectionPos.blockToSectionCoord(box.maxX());
+        int minCZ = SectionPos.blockToSectionCoord(box.minZ());
+        int maxCZ = SectionPos.blockToSectionCoord(box.maxZ());
+
+        long span = (long) (maxCX - minCX + 1) * (maxCZ - minCZ + 1);
+        if (span <= cells.size()) {
+            for (int cx = minCX; cx <= maxCX; cx++) {
+                for (int cz = minCZ; cz <= maxCZ; cz++) {
+                    collect(cells.get(ChunkPos.asLong(cx, cz)), box, result);
+                }
+            }
+        } else {
+            // Caja más grande que la rejilla ocupada: sale más barato recorrer las celdas existentes.
+            for (RegionBoundsStore bucket : cells.values()) {
+                collect(bucket, box, result);
+            }
+        }
+        collect(oversized, box, result);
+        return new ArrayList<>(result);
+    }
+
+    private static void collect(RegionBoundsStore bucket, BoundingBox box, Set<Region> result) {
+        if (bucket == null) return;
+        for (int i = 0; i < bucket.size(); i++) {
+            Region region = bucket.get(i);
+            if (intersects(region, box)) result.add(region);
+        }
+    }
+
+    static boolean intersects(Region region, BoundingBox box) {
+        return region.getMaxX() >= box.minX() && region.getMinX() <= box.maxX()
+            && region.getMaxY() >= box.minY() && region.getMinY() <= box.maxY()
+            && region.getMaxZ() >= box.minZ() && region.getMinZ() <= box.maxZ();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String describe() {
+        return "rejilla: " + cells.size() + " celdas, " + oversized.size() + " regiones fuera de celda";
+    }
+}
@@ -0,0 +1,228 @@
+package com.riburitu.regionvisualizer.util;
+
+import com.riburitu.regionvisualizer.event.RegionEnterEvent;
+import com.riburitu.regionvisualizer.event.RegionExitEvent;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+import net.minecraftforge.common.MinecraftForge;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Recuerda la última posición evaluada de cada jugador y solo vuelve a consultar el
+ * índice de regiones cuando el jugador sale de la caja segura calculada en la última
+ * búsqueda (o cuando cambian las regiones). Un jugador quieto o que se mueve dentro
+ * de la misma zona no cuesta ninguna búsqueda.
+ *
+ * También es el único lugar que detecta transiciones: {@link #update(ServerPlayer)} publica
+ * {@link RegionExitEvent} y {@link RegionEnterEvent} en el bus de Forge cuando cambia la
+ * región del jugador, y el resto del mod (la música, por ejemplo) solo escucha esos eventos.
+ * Los bordes tienen histéresis ({@link RegionHysteresis}) para que caminar por el borde de
+ * una región no dispare una transición tras otra.
+ *
+ * El estado se guarda por UUID y solo con valores primitivos (posición empaquetada, caja
+ * segura e ids de región), sin referencias al jugador ni a las regiones; se descarta al
+ * desconectarse o cambiar de dimensión con {@link #evict(ServerPlayer)}.
+ */
+public class RegionTracker {
+    private static final int NO_REGION = 0;
+    private static final int NO_PENDING = -1;
+
+    private final RegionManager regionManager;
+    private final Map<UUID, TrackedPlayer> players = new HashMap<>();
+    // Regiones en las que hay algún jugador dentro, por id. Conserva las que se borraron con
+    // jugadores dentro para poder publicar su salida; se limpia cuando cambian las regiones.
+    private final Int2ObjectMap<Region> occupied = new Int2ObjectOpenHashMap<>();
+    private int occupiedRevision = -1;
+    private RegionHysteresis hysteresis = RegionHysteresis.NONE;
+
+    public RegionTracker(RegionManager regionManager) {
+        this.regionManager = regionManager;
+    }
+
+    public void configure(RegionHysteresis hysteresis) {
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * Revisa la región del jugador y, si cambió, publica los eventos de salida y entrada.
+     * La transición se confirma cuando la región de destino, con la histéresis aplicada, se
+     * mantuvo el tiempo mínimo.
+     */
+    public void update(ServerPlayer player) {
+        RegionSnapshot snapshot = regionManager.getSnapshot();
+        refreshOccupied(snapshot);
+        TrackedPlayer state = track(player, snapshot);
+        int lastId = state.committedRegionId;
+        int targetId = state.regionId == lastId ? lastId : target(snapshot, state, player.blockPosition());
+        if (targetId == lastId) {
+            state.pendingRegionId = NO_PENDING;
+            return;
+        }
+
+        long currentTime = System.currentTimeMillis();
+        if (targetId != state.pendingRegionId) {
+            state.pendingRegionId = targetId;
+            state.pendingSince = currentTime;
+        }
+        if (currentTime - state.pendingSince < hysteresis.minDwellMillis()) return;
+        // Si algún oyente cancela, el próximo intento vuelve a esperar el tiempo mínimo.
+        state.pendingRegionId = NO_PENDING;
+
+        Region current = snapshot.getById(targetId);
+        Region last = resolveCommitted(snapshot, lastId);
+        if (last != null && MinecraftForge.EVENT_BUS.post(new RegionExitEvent(player, last, current))) {
+            return;
+        }
+        if (current != null && MinecraftForge.EVENT_BUS.post(new RegionEnterEvent(player, last, current))) {
+            state.committedRegionId = NO_REGION;
+            return;
+        }
+        state.committedRegionId = targetId;
+        if (current != null) {
+            occupied.put(targetId, current);
+        }
+    }
+
+    /**
+     * Región a la que debería pasar el jugador: la de su posición si está lo bastante adentro,
+     * salvo que siga cerca de la región actual y esta no quede tapada por otra de más precedencia.
+     */
+    private int target(RegionSnapshot snapshot, TrackedPlayer state, BlockPos pos) {
+        // Una región borrada no retiene a nadie.
+        Region committed = snapshot.getById(state.committedRegionId);
+        boolean near = committed != null && hysteresis.holds(committed, pos);
+        Region candidate = snapshot.getById(state.regionId);
+        if (candidate != null && !hysteresis.admits(candidate, pos)) {
+            return near ? state.committedRegionId : NO_REGION;
+        }
+        if (near && (candidate == null || !candidate.outranks(committed))) {
+            return state.committedRegionId;
+        }
+        return state.regionId;
+    }
+
+    /**
+     * Descarta el estado del jugador. Si estaba dentro de una región se publica su salida,
+     * que en este caso no se puede cancelar.
+     */
+    public void evict(ServerPlayer player) {
+        TrackedPlayer state = players.remove(player.getUUID());
+        if (state == null || state.committedRegionId == NO_REGION) return;
+
+        Region last = resolveCommitted(regionManager.getSnapshot(), state.committedRegionId);
+        if (last != null) {
+            MinecraftForge.EVENT_BUS.post(new RegionExitEvent(player, last, null, true));
+        }
+    }
+
+    public void clear() {
+        players.clear();
+        occupied.clear();
+        occupiedRevision = -1;
+    }
+
+    /**
+     * Región en la que el jugador cuenta como dentro tras la última transición aceptada.
+     */
+    public Region getCommittedRegion(ServerPlayer player) {
+        TrackedPlayer state = players.get(player.getUUID());
+        return state != null ? resolveCommitted(regionManager.getSnapshot(), state.committedRegionId) : null;
+    }
+
+    /**
+     * Devuelve la región en la que está el jugador, o null si no está en ninguna.
+     */
+    public Region getCurrentRegion(ServerPlayer player) {
+        RegionSnapshot snapshot = regionManager.getSnapshot();
+        return snapshot.getById(track(player, snapshot).regionId);
+    }
+
+    public int size() {
+        return players.size();
+    }
+
+    private TrackedPlayer track(ServerPlayer player, RegionSnapshot snapshot) {
+        BlockPos pos = player.blockPosition();
+        long packedPos = pos.asLong();
+        ResourceKey<Level> dimension = player.level().dimension();
+        // Una sola instantánea para la revisión y la búsqueda, así ambas son coherentes.
+        int revision = snapshot.getRevision();
+        TrackedPlayer state = players.get(player.getUUID());
+
+        if (state != null && state.revision == revision && state.dimension == dimension) {
+            // Mismo bloque o todavía dentro de la caja sin bordes: el resultado no cambió.
+            if (packedPos == state.lastPos || state.isInsideSafeBox(pos)) {
+                state.lastPos = packedPos;
+                return state;
+            }
+        }
+
+        RegionLookup lookup = snapshot.lookup(dimension, pos);
+        if (state == null) {
+            state = new TrackedPlayer();
+            players.put(player.getUUID(), state);
+        }
+        state.lastPos = packedPos;
+        state.dimension = dimension;
+        state.setSafeBox(lookup.getSafeBox());
+        state.revision = revision;
+        state.regionId = lookup.getRegion().map(Region::getId).orElse(NO_REGION);
+        return state;
+    }
+
+    private Region resolveCommitted(RegionSnapshot snapshot, int id) {
+        if (id == NO_REGION) return null;
+        Region region = snapshot.getById(id);
+        return region != null ? region : occupied.get(id);
+    }
+
+    // Al cambiar las regiones se rehace la tabla: versiones nuevas de las que siguen y solo las ocupadas.
+    private void refreshOccupied(RegionSnapshot snapshot) {
+        if (occupiedRevision == snapshot.getRevision()) return;
+        occupiedRevision = snapshot.getRevision();
+        Int2ObjectMap<Region> previous = new Int2ObjectOpenHashMap<>(occupied);
+        occupied.clear();
+        for (TrackedPlayer state : players.values()) {
+            int id = state.committedRegionId;
+            if (id == NO_REGION || occupied.containsKey(id)) continue;
+            Region region = snapshot.getById(id);
+            if (region == null) region = previous.get(id);
+            if (region != null) occupied.put(id, region);
+        }
+    }
+
+    private static final class TrackedPlayer {
+        private long lastPos;
+        private ResourceKey<Level> dimension;
+        private int safeMinX, safeMinY, safeMinZ;
+        private int safeMaxX, safeMaxY, safeMaxZ;
+        private int revision;
+        private int regionId;
+        private int committedRegionId;
+        private int pendingRegionId = NO_PENDING;
+        private long pendingSince;
+
+        void setSafeBox(BoundingBox box) {
+            safeMinX = box.minX();
+            safeMinY = box.minY();
+            safeMinZ = box.minZ();
+            safeMaxX = box.maxX();
+            safeMaxY = box.maxY();
+            safeMaxZ = box.maxZ();
+        }
+
+        boolean isInsideSafeBox(BlockPos pos) {
+            return pos.getX() >= safeMinX && pos.getX() <= safeMaxX
+                && pos.getY() >= safeMinY && pos.getY() <= safeMaxY
+                && pos.getZ() >= safeMinZ && pos.getZ() <= safeMaxZ;
+        }
+    }
+}